@@ -2,17 +2,32 @@ package run.halo.encrypt;
 
 import static run.halo.app.extension.index.IndexAttributeFactory.simpleAttribute;
 
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.util.retry.Retry;
 import run.halo.app.extension.Scheme;
 import run.halo.app.extension.SchemeManager;
 import run.halo.app.extension.index.IndexSpec;
 import run.halo.app.plugin.BasePlugin;
 import run.halo.app.plugin.PluginContext;
+import run.halo.encrypt.extension.BlockTotp;
 import run.halo.encrypt.extension.CategoryEncrypt;
 import run.halo.encrypt.extension.EncryptBlock;
 import run.halo.encrypt.extension.UnlockRecord;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.processor.BlockTotpRegistry;
+import run.halo.encrypt.processor.BlockTotpWriter;
+import run.halo.encrypt.processor.EncryptBlockRegistry;
+import run.halo.encrypt.processor.EncryptBlockStore;
+import run.halo.encrypt.processor.EncryptSettingsProvider;
+import run.halo.encrypt.processor.PlaceholderRenderer;
+import run.halo.encrypt.processor.ProcessedContentCache;
+import run.halo.encrypt.token.UnlockTokenService;
+import run.halo.encrypt.verify.TotpCodeScheduler;
+import run.halo.encrypt.verify.VerifiedCredentialMemo;
+import run.halo.encrypt.verify.VerifyScheduler;
 
 /**
  * 文章加密插件主类
@@ -26,6 +41,42 @@ public class EncryptPlugin extends BasePlugin {
     @Autowired
     private SchemeManager schemeManager;
 
+    @Autowired
+    private EncryptSettingsProvider settingsProvider;
+
+    @Autowired
+    private EncryptBlockRegistry blockRegistry;
+
+    @Autowired
+    private EncryptBlockStore blockStore;
+
+    @Autowired
+    private ProcessedContentCache contentCache;
+
+    @Autowired
+    private PlaceholderRenderer placeholderRenderer;
+
+    @Autowired
+    private EncryptMetrics metrics;
+
+    @Autowired
+    private VerifyScheduler verifyScheduler;
+
+    @Autowired
+    private VerifiedCredentialMemo credentialMemo;
+
+    @Autowired
+    private UnlockTokenService unlockTokenService;
+
+    @Autowired
+    private TotpCodeScheduler totpCodeScheduler;
+
+    @Autowired
+    private BlockTotpRegistry blockTotpRegistry;
+
+    @Autowired
+    private BlockTotpWriter blockTotpWriter;
+
     public EncryptPlugin(PluginContext pluginContext) {
         super(pluginContext);
     }
@@ -34,12 +85,44 @@ public class EncryptPlugin extends BasePlugin {
     public void start() {
         log.info("文章加密插件启动中...");
         registerSchemes();
+        // 预加载配置快照，之后由 ConfigMap 变更事件刷新
+        settingsProvider.refresh().subscribe(
+                snapshot -> log.debug("配置快照已加载"),
+                error -> log.warn("加载配置快照失败: {}", error.getMessage()));
+        // 加载解锁令牌签名密钥（首次启动时生成）
+        unlockTokenService.ensureLoaded().subscribe(
+                null,
+                error -> log.warn("加载解锁令牌密钥失败: {}", error.getMessage()));
+        // 加载区块 TOTP 配置（首次启动时从旧 ConfigMap 迁移），之后由 watch 事件逐个更新；
+        // 加载完成前或加载失败时，验证按区块直接读取 BlockTotp
+        blockTotpRegistry.load()
+                .retryWhen(Retry.backoff(5, Duration.ofSeconds(1)))
+                .subscribe(
+                count -> log.info("已加载 {} 个区块 TOTP 配置", count),
+                error -> log.warn("加载区块 TOTP 配置失败: {}", error.getMessage()));
+        // 启动区块 TOTP 合并写入
+        blockTotpWriter.start();
+        // 启动区块后台写入，并从 EncryptBlock 预热最近的区块
+        blockStore.start();
+        blockRegistry.warmUp().subscribe(
+                count -> log.info("已预热 {} 个加密区块", count),
+                error -> log.warn("预热加密区块失败: {}", error.getMessage()));
+        // 缓存命中率等指标
+        metrics.bindCache("processed-content", contentCache::stats);
+        metrics.bindCache("blocks", blockRegistry::cacheStats);
+        metrics.bindCache("placeholder", placeholderRenderer::stats);
+        metrics.bindCache("verified-credentials", credentialMemo::stats);
         log.info("文章加密插件启动完成");
     }
 
     @Override
     public void stop() {
         log.info("文章加密插件停止中...");
+        blockStore.stop();
+        blockTotpWriter.stop();
+        verifyScheduler.dispose();
+        totpCodeScheduler.dispose();
+        metrics.close();
         unregisterSchemes();
         log.info("文章加密插件已停止");
     }
@@ -88,6 +171,9 @@ public class EncryptPlugin extends BasePlugin {
                     .setIndexFunc(simpleAttribute(CategoryEncrypt.class,
                             cat -> String.valueOf(cat.getSpec().getEnabled()))));
         });
+
+        // 注册区块 TOTP Extension（metadata.name 由 blockId 确定，读写都按名称，无需索引）
+        schemeManager.register(BlockTotp.class);
     }
 
     private void unregisterSchemes() {
@@ -99,5 +185,8 @@ public class EncryptPlugin extends BasePlugin {
 
         Scheme categoryEncryptScheme = schemeManager.get(CategoryEncrypt.class);
         schemeManager.unregister(categoryEncryptScheme);
+
+        Scheme blockTotpScheme = schemeManager.get(BlockTotp.class);
+        schemeManager.unregister(blockTotpScheme);
     }
 }
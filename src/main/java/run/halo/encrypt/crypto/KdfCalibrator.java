@@ -0,0 +1,93 @@
+package run.halo.encrypt.crypto;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 密码哈希参数校准
+ * 在当前机器上实测各算法的单次校验耗时，推算达到目标耗时所需的成本参数：
+ * BCrypt 强度每加一耗时翻倍，PBKDF2 耗时与迭代次数成正比，Argon2 耗时与内存大小近似成正比
+ *
+ * 校准会占用一个 CPU 核心数百毫秒到数秒，应在后台线程中调用
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KdfCalibrator {
+
+    // 每个测量点的重复次数（取最小值，排除 GC 和调度抖动）
+    private static final int SAMPLES = 3;
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    // 测量起点
+    private static final int BCRYPT_BASE_STRENGTH = 8;
+    private static final int PBKDF2_BASE_ITERATIONS = 20_000;
+    private static final int ARGON2_BASE_MEMORY_KB = 16_384;
+
+    // 推荐参数的上限：Argon2 内存会乘以校验线程数，限制在 256 MB
+    private static final int BCRYPT_MAX_STRENGTH = 16;
+    private static final int ARGON2_MAX_MEMORY_KB = 262_144;
+
+    private final PasswordHasher hasher;
+
+    /**
+     * 推算达到目标校验耗时的参数
+     *
+     * @param algorithm    算法（bcrypt / pbkdf2 / argon2）
+     * @param targetMillis 目标单次校验耗时（毫秒）
+     */
+    public Calibration calibrate(String algorithm, long targetMillis) {
+        KdfParameters base = KdfParameters.DEFAULTS.withAlgorithm(algorithm);
+        long target = Math.max(1, targetMillis);
+
+        KdfParameters recommended = switch (base.algorithm()) {
+            case KdfParameters.PBKDF2 -> {
+                double millis = measure(base.withPbkdf2Iterations(PBKDF2_BASE_ITERATIONS));
+                long iterations = Math.round(PBKDF2_BASE_ITERATIONS * target / millis / 1000) * 1000;
+                yield base.withPbkdf2Iterations((int) Math.min(Integer.MAX_VALUE, iterations));
+            }
+            case KdfParameters.ARGON2 -> {
+                double millis = measure(base.withArgon2MemoryKb(ARGON2_BASE_MEMORY_KB));
+                long memoryKb = Math.round(ARGON2_BASE_MEMORY_KB * target / millis / 1024) * 1024;
+                yield base.withArgon2MemoryKb((int) Math.min(ARGON2_MAX_MEMORY_KB, memoryKb));
+            }
+            default -> {
+                double millis = measure(base.withBcryptStrength(BCRYPT_BASE_STRENGTH));
+                int strength = BCRYPT_BASE_STRENGTH + (int) Math.round(Math.log(target / millis) / Math.log(2));
+                yield base.withBcryptStrength(Math.min(BCRYPT_MAX_STRENGTH, strength));
+            }
+        };
+
+        // 按推荐参数再实测一次，供管理员确认
+        double measured = measure(recommended);
+        log.info("密码哈希参数校准完成 - 算法: {}, 目标: {} ms, 实测: {} ms, 参数: {}",
+                recommended.algorithm(), target, String.format("%.1f", measured), recommended);
+        return new Calibration(recommended, target, measured);
+    }
+
+    /**
+     * 单次校验耗时（毫秒，多次取最小值）
+     */
+    private double measure(KdfParameters parameters) {
+        String encoded = hasher.encode(SAMPLE_PASSWORD, parameters);
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            hasher.matches(SAMPLE_PASSWORD, encoded);
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000.0);
+        }
+        return Math.max(0.01, best);
+    }
+
+    /**
+     * @param parameters     推荐参数
+     * @param targetMillis   目标耗时
+     * @param measuredMillis 按推荐参数实测的耗时
+     */
+    public record Calibration(KdfParameters parameters, long targetMillis, double measuredMillis) {
+    }
+}
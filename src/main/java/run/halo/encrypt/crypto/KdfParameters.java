@@ -0,0 +1,53 @@
+package run.halo.encrypt.crypto;
+
+/**
+ * 密码哈希算法及其成本参数
+ *
+ * @param algorithm        算法：bcrypt、pbkdf2 或 argon2
+ * @param bcryptStrength   BCrypt 强度（log2 轮数，4~20）
+ * @param pbkdf2Iterations PBKDF2-HMAC-SHA256 迭代次数
+ * @param argon2MemoryKb   Argon2id 内存（KB）
+ * @param argon2Iterations Argon2id 迭代次数
+ * @author Developer
+ */
+public record KdfParameters(
+        String algorithm,
+        int bcryptStrength,
+        int pbkdf2Iterations,
+        int argon2MemoryKb,
+        int argon2Iterations) {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+    public static final String ARGON2 = "argon2";
+
+    public static final KdfParameters DEFAULTS = new KdfParameters(BCRYPT, 10, 310_000, 19_456, 2);
+
+    public KdfParameters {
+        algorithm = PBKDF2.equals(algorithm) || ARGON2.equals(algorithm) ? algorithm : BCRYPT;
+        bcryptStrength = clamp(bcryptStrength, 4, 20);
+        pbkdf2Iterations = clamp(pbkdf2Iterations, 1_000, 10_000_000);
+        argon2MemoryKb = clamp(argon2MemoryKb, 1_024, 1_048_576);
+        argon2Iterations = clamp(argon2Iterations, 1, 20);
+    }
+
+    public KdfParameters withAlgorithm(String newAlgorithm) {
+        return new KdfParameters(newAlgorithm, bcryptStrength, pbkdf2Iterations, argon2MemoryKb, argon2Iterations);
+    }
+
+    public KdfParameters withBcryptStrength(int strength) {
+        return new KdfParameters(algorithm, strength, pbkdf2Iterations, argon2MemoryKb, argon2Iterations);
+    }
+
+    public KdfParameters withPbkdf2Iterations(int iterations) {
+        return new KdfParameters(algorithm, bcryptStrength, iterations, argon2MemoryKb, argon2Iterations);
+    }
+
+    public KdfParameters withArgon2MemoryKb(int memoryKb) {
+        return new KdfParameters(algorithm, bcryptStrength, pbkdf2Iterations, memoryKb, argon2Iterations);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.min(max, Math.max(min, value));
+    }
+}
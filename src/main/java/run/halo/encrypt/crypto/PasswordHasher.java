@@ -0,0 +1,167 @@
+package run.halo.encrypt.crypto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.processor.EncryptSettingsProvider;
+
+/**
+ * 区块密码哈希（可配置算法与成本）
+ * 按设置中的算法和参数生成哈希，校验时根据哈希自身的格式选择算法，因此调整设置后旧哈希仍可校验，
+ * 并在下次校验成功时按新参数重新哈希（见 {@link #needsRehash(String)}）
+ *
+ * 哈希格式（与 DelegatingPasswordEncoder 类似，以前缀区分算法）：
+ * <ul>
+ *     <li>BCrypt：{@code $2a$<强度>$...}，不加前缀，与已有数据兼容</li>
+ *     <li>PBKDF2：{@code {pbkdf2}<迭代次数>$<十六进制盐和哈希>}，迭代次数写入哈希以便校验</li>
+ *     <li>Argon2id：{@code {argon2}$argon2id$v=19$m=<内存>,t=<迭代>,p=1$...}</li>
+ * </ul>
+ * Argon2 依赖的 BouncyCastle 随插件打包，选择 Argon2 时不会退回其他算法
+ *
+ * @author Developer
+ */
+@Component
+@RequiredArgsConstructor
+public class PasswordHasher {
+
+    private static final String PBKDF2_PREFIX = "{" + KdfParameters.PBKDF2 + "}";
+    private static final String ARGON2_PREFIX = "{" + KdfParameters.ARGON2 + "}";
+
+    private static final int SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+    private static final int ARGON2_PARALLELISM = 1;
+
+    // BCrypt 和 Argon2 的参数都写在哈希中，任一实例都可校验
+    private static final PasswordEncoder BCRYPT_MATCHER = new BCryptPasswordEncoder();
+
+    private final EncryptSettingsProvider settingsProvider;
+
+    // 参数 -> 编码器（PBKDF2 校验也按迭代次数取用）
+    private final Map<String, PasswordEncoder> encoders = new ConcurrentHashMap<>();
+
+    /**
+     * 当前生效的参数
+     */
+    public KdfParameters effective() {
+        return settingsProvider.current().kdf();
+    }
+
+    /**
+     * 按当前参数哈希
+     */
+    public String encode(String rawPassword) {
+        return encode(rawPassword, effective());
+    }
+
+    /**
+     * 按指定参数哈希（也用于校准）
+     */
+    public String encode(String rawPassword, KdfParameters parameters) {
+        return switch (parameters.algorithm()) {
+            case KdfParameters.PBKDF2 -> PBKDF2_PREFIX + parameters.pbkdf2Iterations() + "$"
+                    + pbkdf2(parameters.pbkdf2Iterations()).encode(rawPassword);
+            case KdfParameters.ARGON2 -> ARGON2_PREFIX + argon2(parameters).encode(rawPassword);
+            default -> bcrypt(parameters.bcryptStrength()).encode(rawPassword);
+        };
+    }
+
+    /**
+     * 校验密码，哈希格式无法识别时返回 false
+     */
+    public boolean matches(String rawPassword, String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return false;
+        }
+        if (encoded.startsWith(PBKDF2_PREFIX)) {
+            int separator = encoded.indexOf('$', PBKDF2_PREFIX.length());
+            int iterations = separator > 0 ? parseInt(encoded.substring(PBKDF2_PREFIX.length(), separator)) : -1;
+            return iterations > 0
+                    && pbkdf2(iterations).matches(rawPassword, encoded.substring(separator + 1));
+        }
+        if (encoded.startsWith(ARGON2_PREFIX)) {
+            return argon2(KdfParameters.DEFAULTS).matches(rawPassword, encoded.substring(ARGON2_PREFIX.length()));
+        }
+        return BCRYPT_MATCHER.matches(rawPassword, encoded);
+    }
+
+    /**
+     * 哈希的算法或成本参数与当前设置不一致（需要在校验成功后重新哈希）
+     */
+    public boolean needsRehash(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return false;
+        }
+        KdfParameters current = effective();
+        return switch (current.algorithm()) {
+            case KdfParameters.PBKDF2 ->
+                    !encoded.startsWith(PBKDF2_PREFIX + current.pbkdf2Iterations() + "$");
+            case KdfParameters.ARGON2 -> !encoded.startsWith(ARGON2_PREFIX)
+                    || !encoded.contains("$m=" + current.argon2MemoryKb() + ",t=" + current.argon2Iterations() + ",");
+            default -> bcryptStrength(encoded) != current.bcryptStrength();
+        };
+    }
+
+    /**
+     * 判断字符串是否已是本类生成的哈希（而不是明文密码）
+     */
+    public static boolean isEncoded(String value) {
+        return value != null
+                && (value.startsWith("$2") || value.startsWith(PBKDF2_PREFIX) || value.startsWith(ARGON2_PREFIX));
+    }
+
+    /**
+     * 哈希使用的算法（按前缀判断，无前缀时为 BCrypt）
+     */
+    public static String algorithmOf(String encoded) {
+        if (encoded != null && encoded.startsWith(PBKDF2_PREFIX)) {
+            return KdfParameters.PBKDF2;
+        }
+        if (encoded != null && encoded.startsWith(ARGON2_PREFIX)) {
+            return KdfParameters.ARGON2;
+        }
+        return KdfParameters.BCRYPT;
+    }
+
+    /**
+     * BCrypt 哈希中的强度（$2a$10$... 中的 10），不是 BCrypt 哈希时返回 -1
+     */
+    private static int bcryptStrength(String encoded) {
+        if (!encoded.startsWith("$2") || encoded.length() < 7) {
+            return -1;
+        }
+        int start = encoded.indexOf('$', 1) + 1;
+        int end = encoded.indexOf('$', start);
+        return start > 0 && end > start ? parseInt(encoded.substring(start, end)) : -1;
+    }
+
+    private PasswordEncoder bcrypt(int strength) {
+        return encoders.computeIfAbsent(KdfParameters.BCRYPT + ":" + strength,
+                key -> new BCryptPasswordEncoder(strength));
+    }
+
+    private PasswordEncoder pbkdf2(int iterations) {
+        return encoders.computeIfAbsent(KdfParameters.PBKDF2 + ":" + iterations,
+                key -> new Pbkdf2PasswordEncoder("", SALT_LENGTH, iterations,
+                        Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+    }
+
+    private PasswordEncoder argon2(KdfParameters parameters) {
+        return encoders.computeIfAbsent(
+                KdfParameters.ARGON2 + ":" + parameters.argon2MemoryKb() + ":" + parameters.argon2Iterations(),
+                key -> new Argon2PasswordEncoder(SALT_LENGTH, ARGON2_HASH_LENGTH, ARGON2_PARALLELISM,
+                        parameters.argon2MemoryKb(), parameters.argon2Iterations()));
+    }
+
+    private static int parseInt(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
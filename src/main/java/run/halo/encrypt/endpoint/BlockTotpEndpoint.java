@@ -3,13 +3,11 @@ package run.halo.encrypt.endpoint;
 import static org.springdoc.core.fn.builders.apiresponse.Builder.responseBuilder;
 import static org.springdoc.core.fn.builders.requestbody.Builder.requestBodyBuilder;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -17,19 +15,27 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.webflux.core.fn.SpringdocRouteBuilder;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
-import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ListOptions;
 import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.plugin.ReactiveSettingFetcher;
+import run.halo.encrypt.extension.BlockTotp;
+import run.halo.encrypt.extension.BlockTotp.BlockTotpSpec;
+import run.halo.encrypt.processor.BlockTotpWriter;
 import run.halo.encrypt.util.TotpUtils;
+import run.halo.encrypt.verify.TotpCodeScheduler;
+import run.halo.encrypt.verify.TotpCodeScheduler.CodeSchedule;
+import run.halo.encrypt.verify.TotpKeyCache;
 
 /**
  * 区块级 TOTP 动态密码 API 端点
- * 使用 ConfigMap 存储，避免 Post annotation 缓存问题
+ * 每个区块的配置单独保存为一个 {@link BlockTotp}，读写只涉及该区块；
+ * 生成和删除经 {@link BlockTotpWriter} 合并写入，并发请求不会互相覆盖或因版本冲突失败
  * 
  * @author Developer
  */
@@ -40,10 +46,10 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
 
     private final ReactiveExtensionClient client;
     private final ReactiveSettingFetcher settingFetcher;
+    private final TotpKeyCache keyCache;
+    private final TotpCodeScheduler codeScheduler;
+    private final BlockTotpWriter blockTotpWriter;
 
-    private static final String CONFIGMAP_NAME = "encrypt-block-totp";
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
-            .registerModule(new JavaTimeModule());
 
     @Override
     public RouterFunction<ServerResponse> endpoint() {
@@ -115,28 +121,26 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                     String secret = TotpUtils.generateSecret();
 
                     // 创建配置
-                    BlockTotpConfig config = new BlockTotpConfig();
+                    BlockTotpSpec config = new BlockTotpSpec();
                     config.setSecret(secret);
                     config.setDurationDays(finalDuration);
                     config.setCreatedAt(LocalDateTime.now().toString());
                     config.setLabel(req.getLabel() != null ? req.getLabel() : "区块密码");
                     config.setEnabled(true);
 
-                    // 保存到 ConfigMap
+                    // 保存为该区块的 BlockTotp，响应按实际写入的配置生成（同一窗口内的并发生成以最后一次为准）
                     return saveBlockTotpConfig(finalBlockId, config)
-                            .flatMap(saved -> {
-                                LocalDateTime createdAt = LocalDateTime.parse(config.getCreatedAt());
-                                String currentCode = TotpUtils.getCodeByCreationTime(
-                                        secret, createdAt, finalDuration);
-                                String remaining = TotpUtils.getRemainingByCreation(
-                                        createdAt, finalDuration);
+                            .flatMap(stored -> {
+                                CodeSchedule schedule = schedule(finalBlockId, stored);
+                                String currentCode = TotpUtils.formatCode(schedule.currentCode());
+                                String remaining = TotpUtils.formatRemaining(codeScheduler.remaining(schedule));
 
                                 Map<String, Object> result = new HashMap<>();
                                 result.put("success", true);
                                 result.put("blockId", finalBlockId);
                                 result.put("currentCode", currentCode);
                                 result.put("remainingTime", remaining);
-                                result.put("durationDays", finalDuration);
+                                result.put("durationDays", stored.getDurationDays());
 
                                 log.info("区块 TOTP 生成成功: blockId={}", finalBlockId);
                                 return ServerResponse.ok().bodyValue(result);
@@ -161,17 +165,17 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                                 Map.of("error", "区块 TOTP 不存在或未启用"));
                     }
 
-                    LocalDateTime createdAt = LocalDateTime.parse(config.getCreatedAt());
-                    int days = config.getDurationDays();
-                    String currentCode = TotpUtils.getCodeByCreationTime(
-                            config.getSecret(), createdAt, days);
-                    String remaining = TotpUtils.getRemainingByCreation(createdAt, days);
+                    CodeSchedule schedule = schedule(blockId, config);
+                    String currentCode = TotpUtils.formatCode(schedule.currentCode());
+                    String remaining = TotpUtils.formatRemaining(codeScheduler.remaining(schedule));
 
                     Map<String, Object> result = new HashMap<>();
                     result.put("blockId", blockId);
                     result.put("currentCode", currentCode);
+                    result.put("nextCode", TotpUtils.formatCode(schedule.nextCode()));
+                    result.put("expiresAt", schedule.expiresAt().toString());
                     result.put("remainingTime", remaining);
-                    result.put("durationDays", days);
+                    result.put("durationDays", config.getDurationDays());
                     result.put("label", config.getLabel());
 
                     return ServerResponse.ok().bodyValue(result);
@@ -188,6 +192,7 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
         return removeBlockTotpConfig(blockId)
                 .flatMap(removed -> {
                     if (removed) {
+                        codeScheduler.remove(TotpCodeScheduler.BLOCK_PREFIX + blockId);
                         log.info("区块 TOTP 删除成功: blockId={}", blockId);
                         return ServerResponse.ok().bodyValue(
                                 Map.of("success", true, "message", "删除成功"));
@@ -195,6 +200,11 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                         return ServerResponse.ok().bodyValue(
                                 Map.of("success", false, "error", "区块 TOTP 不存在"));
                     }
+                })
+                .onErrorResume(e -> {
+                    log.error("删除区块 TOTP 失败", e);
+                    return ServerResponse.ok().bodyValue(
+                            Map.of("success", false, "error", e.getMessage()));
                 });
     }
 
@@ -208,19 +218,17 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                             .filter(entry -> entry.getValue().isEnabled())
                             .map(entry -> {
                                 String blockId = entry.getKey();
-                                BlockTotpConfig config = entry.getValue();
+                                BlockTotpSpec config = entry.getValue();
 
-                                LocalDateTime createdAt = LocalDateTime.parse(config.getCreatedAt());
-                                int days = config.getDurationDays();
-                                String currentCode = TotpUtils.getCodeByCreationTime(
-                                        config.getSecret(), createdAt, days);
-                                String remaining = TotpUtils.getRemainingByCreation(createdAt, days);
+                                CodeSchedule schedule = schedule(blockId, config);
+                                String currentCode = TotpUtils.formatCode(schedule.currentCode());
+                                String remaining = TotpUtils.formatRemaining(codeScheduler.remaining(schedule));
 
                                 Map<String, Object> info = new HashMap<>();
                                 info.put("blockId", blockId);
                                 info.put("currentCode", currentCode);
                                 info.put("remainingTime", remaining);
-                                info.put("durationDays", days);
+                                info.put("durationDays", config.getDurationDays());
                                 info.put("label", config.getLabel());
                                 info.put("createdAt", config.getCreatedAt());
                                 return info;
@@ -231,128 +239,48 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                 });
     }
 
-    // ========== ConfigMap 操作 ==========
+    // ========== BlockTotp 操作 ==========
 
     /**
-     * 保存区块 TOTP 配置到 ConfigMap
+     * 保存区块 TOTP 配置（经 {@link BlockTotpWriter} 合并写入，写入成功后发出实际写入的配置）
      */
-    private Mono<Boolean> saveBlockTotpConfig(String blockId, BlockTotpConfig config) {
-        return client.fetch(ConfigMap.class, CONFIGMAP_NAME)
-                .flatMap(configMap -> {
-                    Map<String, String> data = configMap.getData();
-                    if (data == null) {
-                        data = new HashMap<>();
-                        configMap.setData(data);
-                    }
-                    try {
-                        // 加载现有配置
-                        Map<String, BlockTotpConfig> blocks = new HashMap<>();
-                        String existingJson = data.get("blocks");
-                        if (existingJson != null && !existingJson.isEmpty()) {
-                            blocks = OBJECT_MAPPER.readValue(existingJson,
-                                    new TypeReference<Map<String, BlockTotpConfig>>() {
-                                    });
-                        }
-                        // 添加新配置
-                        blocks.put(blockId, config);
-                        // 保存
-                        data.put("blocks", OBJECT_MAPPER.writeValueAsString(blocks));
-                        return client.update(configMap).thenReturn(true);
-                    } catch (Exception e) {
-                        log.error("保存区块 TOTP 配置失败", e);
-                        return Mono.just(false);
-                    }
-                })
-                .switchIfEmpty(createConfigMapWithBlock(blockId, config));
+    private Mono<BlockTotpSpec> saveBlockTotpConfig(String blockId, BlockTotpSpec config) {
+        return blockTotpWriter.save(blockId, config)
+                .map(BlockTotp::getSpec);
     }
 
     /**
-     * 创建 ConfigMap 并添加区块配置
+     * 加载单个区块 TOTP 配置
      */
-    private Mono<Boolean> createConfigMapWithBlock(String blockId, BlockTotpConfig config) {
-        ConfigMap configMap = new ConfigMap();
-        configMap.setMetadata(new run.halo.app.extension.Metadata());
-        configMap.getMetadata().setName(CONFIGMAP_NAME);
-
-        try {
-            Map<String, BlockTotpConfig> blocks = new HashMap<>();
-            blocks.put(blockId, config);
-
-            Map<String, String> data = new HashMap<>();
-            data.put("blocks", OBJECT_MAPPER.writeValueAsString(blocks));
-            configMap.setData(data);
-
-            return client.create(configMap).thenReturn(true);
-        } catch (Exception e) {
-            log.error("创建 ConfigMap 失败", e);
-            return Mono.just(false);
-        }
+    private Mono<BlockTotpSpec> loadBlockTotpConfig(String blockId) {
+        return client.fetch(BlockTotp.class, BlockTotp.nameOf(blockId))
+                .filter(extension -> extension.getSpec() != null)
+                .map(BlockTotp::getSpec);
     }
 
     /**
-     * 加载单个区块 TOTP 配置
+     * 加载所有区块 TOTP 配置（按创建时间排序）
      */
-    private Mono<BlockTotpConfig> loadBlockTotpConfig(String blockId) {
-        return loadAllBlockTotpConfigs()
-                .map(blocks -> blocks.get(blockId))
-                .defaultIfEmpty(null);
+    private Mono<Map<String, BlockTotpSpec>> loadAllBlockTotpConfigs() {
+        return client.listAll(BlockTotp.class, new ListOptions(), Sort.by("metadata.creationTimestamp"))
+                .filter(extension -> extension.getSpec() != null && extension.getSpec().getBlockId() != null)
+                .collectMap(extension -> extension.getSpec().getBlockId(), BlockTotp::getSpec,
+                        LinkedHashMap::new);
     }
 
     /**
-     * 加载所有区块 TOTP 配置
+     * 删除区块 TOTP 配置（经 {@link BlockTotpWriter} 合并写入，写入成功后完成）
      */
-    private Mono<Map<String, BlockTotpConfig>> loadAllBlockTotpConfigs() {
-        return client.fetch(ConfigMap.class, CONFIGMAP_NAME)
-                .map(configMap -> {
-                    Map<String, String> data = configMap.getData();
-                    if (data == null) {
-                        return new HashMap<String, BlockTotpConfig>();
-                    }
-                    String json = data.get("blocks");
-                    if (json == null || json.isEmpty()) {
-                        return new HashMap<String, BlockTotpConfig>();
-                    }
-                    try {
-                        return OBJECT_MAPPER.readValue(json,
-                                new TypeReference<Map<String, BlockTotpConfig>>() {
-                                });
-                    } catch (Exception e) {
-                        log.error("解析区块 TOTP 配置失败", e);
-                        return new HashMap<String, BlockTotpConfig>();
-                    }
-                })
-                .defaultIfEmpty(new HashMap<>());
+    private Mono<Boolean> removeBlockTotpConfig(String blockId) {
+        return blockTotpWriter.delete(blockId);
     }
 
     /**
-     * 删除区块 TOTP 配置
+     * 区块密码的当前周期（由周期调度预先计算）
      */
-    private Mono<Boolean> removeBlockTotpConfig(String blockId) {
-        return client.fetch(ConfigMap.class, CONFIGMAP_NAME)
-                .flatMap(configMap -> {
-                    Map<String, String> data = configMap.getData();
-                    if (data == null) {
-                        return Mono.just(false);
-                    }
-                    try {
-                        String json = data.get("blocks");
-                        if (json == null || json.isEmpty()) {
-                            return Mono.just(false);
-                        }
-                        Map<String, BlockTotpConfig> blocks = OBJECT_MAPPER.readValue(json,
-                                new TypeReference<Map<String, BlockTotpConfig>>() {
-                                });
-                        if (blocks.remove(blockId) != null) {
-                            data.put("blocks", OBJECT_MAPPER.writeValueAsString(blocks));
-                            return client.update(configMap).thenReturn(true);
-                        }
-                        return Mono.just(false);
-                    } catch (Exception e) {
-                        log.error("删除区块 TOTP 配置失败", e);
-                        return Mono.just(false);
-                    }
-                })
-                .defaultIfEmpty(false);
+    private CodeSchedule schedule(String blockId, BlockTotpSpec config) {
+        return codeScheduler.schedule(TotpCodeScheduler.BLOCK_PREFIX + blockId, config.getSecret(),
+                LocalDateTime.parse(config.getCreatedAt()), config.getDurationDays());
     }
 
     /**
@@ -368,6 +296,10 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
      * 验证区块 TOTP 密码
      */
     public Mono<Boolean> verifyBlockTotp(String blockId, String inputCode) {
+        int code = TotpUtils.parseCode(inputCode);
+        if (code < 0) {
+            return Mono.just(false);
+        }
         return loadBlockTotpConfig(blockId)
                 .map(config -> {
                     if (config == null || !config.isEnabled()) {
@@ -375,7 +307,7 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
                     }
                     LocalDateTime createdAt = LocalDateTime.parse(config.getCreatedAt());
                     return TotpUtils.verifyCodeByCreationTime(
-                            config.getSecret(), inputCode, createdAt, config.getDurationDays());
+                            keyCache.get(config.getSecret()), code, createdAt, config.getDurationDays());
                 })
                 .defaultIfEmpty(false);
     }
@@ -443,13 +375,4 @@ public class BlockTotpEndpoint implements run.halo.app.core.extension.endpoint.C
         private int durationDays;
         private String label;
     }
-
-    @Data
-    public static class BlockTotpConfig {
-        private String secret;
-        private int durationDays;
-        private String createdAt;
-        private String label;
-        private boolean enabled;
-    }
 }
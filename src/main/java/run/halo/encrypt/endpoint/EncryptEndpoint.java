@@ -4,12 +4,15 @@ import static org.springdoc.core.fn.builders.apiresponse.Builder.responseBuilder
 import static org.springdoc.core.fn.builders.parameter.Builder.parameterBuilder;
 import static org.springdoc.core.fn.builders.requestbody.Builder.requestBodyBuilder;
 
-import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springdoc.webflux.core.fn.SpringdocRouteBuilder;
 import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Component;
@@ -20,6 +23,8 @@ import reactor.core.publisher.Mono;
 import run.halo.app.core.extension.endpoint.CustomEndpoint;
 import run.halo.app.extension.GroupVersion;
 import run.halo.encrypt.processor.EncryptContentProcessor;
+import run.halo.encrypt.token.UnlockTokenService;
+import run.halo.encrypt.verify.VerifyScheduler;
 
 /**
  * 加密功能 API 端点（支持安全功能 + 会话记忆）
@@ -31,10 +36,11 @@ import run.halo.encrypt.processor.EncryptContentProcessor;
 @RequiredArgsConstructor
 public class EncryptEndpoint implements CustomEndpoint {
 
-        // Cookie 前缀
-        private static final String UNLOCK_COOKIE_PREFIX = "encrypt_unlocked_";
-        // Cookie 有效期（默认 24 小时）
-        private static final Duration COOKIE_MAX_AGE = Duration.ofHours(24);
+        private final EncryptContentProcessor encryptContentProcessor;
+        private final UnlockTokenService unlockTokenService;
+
+        // 旧版逐区块 Cookie 前缀（不再认可，解锁成功时清除）
+        private static final String LEGACY_COOKIE_PREFIX = "encrypt_unlocked_";
 
         @Override
         public RouterFunction<ServerResponse> endpoint() {
@@ -50,6 +56,15 @@ public class EncryptEndpoint implements CustomEndpoint {
                                                                                 .implementation(UnlockRequest.class))
                                                                 .response(responseBuilder()
                                                                                 .implementation(UnlockResponse.class)))
+                                // 批量解锁（同一页面的多个区块共用一个密码）
+                                .POST("/unlock-batch", this::unlockBatch,
+                                                builder -> builder.operationId("UnlockBatch")
+                                                                .tag(tag)
+                                                                .description("使用同一密码批量解锁多个加密区块，相同密码哈希只校验一次")
+                                                                .requestBody(requestBodyBuilder()
+                                                                                .implementation(BatchUnlockRequest.class))
+                                                                .response(responseBuilder()
+                                                                                .implementation(BatchUnlockResponse.class)))
                                 // 检查解锁状态
                                 .GET("/check-unlock/{blockId}", this::checkUnlockStatus,
                                                 builder -> builder.operationId("CheckUnlockStatus")
@@ -101,53 +116,135 @@ public class EncryptEndpoint implements CustomEndpoint {
                                         }
 
                                         // 调用内容处理器验证密码
-                                        var result = EncryptContentProcessor.verifyAndGetContent(
-                                                        req.blockId(), req.password(), clientIp);
+                                        return encryptContentProcessor.verifyAndGetContent(
+                                                        req.blockId(), req.password(), clientIp)
+                                                        .flatMap(result -> toUnlockResponse(request, req.blockId(),
+                                                                        result));
+                                })
+                                .onErrorResume(VerifyScheduler.VerifyRejectedException.class, e -> {
+                                        // 校验队列已满，让客户端稍后重试，不占用更多资源
+                                        return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                                                        .header(HttpHeaders.RETRY_AFTER,
+                                                                        String.valueOf(e.getRetryAfterSeconds()))
+                                                        .contentType(MediaType.APPLICATION_JSON)
+                                                        .bodyValue(new UnlockResponse(false, e.getMessage(), null,
+                                                                        false, 0));
+                                })
+                                .onErrorResume(e -> {
+                                        log.error("解锁失败: {}", e.getMessage(), e);
+                                        return ServerResponse.ok()
+                                                        .contentType(MediaType.APPLICATION_JSON)
+                                                        .bodyValue(new UnlockResponse(false, "解锁失败: " + e.getMessage(),
+                                                                        null, false, 0));
+                                });
+        }
 
-                                        if (result.success()) {
-                                                // 解锁成功，设置会话 Cookie
-                                                ResponseCookie cookie = createUnlockCookie(req.blockId());
+        /**
+         * 批量解锁（解锁成功的区块加入同一个解锁令牌 Cookie）
+         */
+        private Mono<ServerResponse> unlockBatch(ServerRequest request) {
+                String clientIp = getClientIp(request);
+
+                return request.bodyToMono(BatchUnlockRequest.class)
+                                .flatMap(req -> {
+                                        if (req.blockIds() == null || req.blockIds().isEmpty()) {
                                                 return ServerResponse.ok()
-                                                                .cookie(cookie)
                                                                 .contentType(MediaType.APPLICATION_JSON)
-                                                                .bodyValue(new UnlockResponse(
-                                                                                result.success(),
-                                                                                result.message(),
-                                                                                result.content(),
-                                                                                result.locked(),
-                                                                                result.lockRemainingMinutes()));
-                                        } else {
+                                                                .bodyValue(new BatchUnlockResponse(false, "缺少 blockIds",
+                                                                                List.of()));
+                                        }
+
+                                        if (req.password() == null || req.password().isEmpty()) {
                                                 return ServerResponse.ok()
                                                                 .contentType(MediaType.APPLICATION_JSON)
-                                                                .bodyValue(new UnlockResponse(
-                                                                                result.success(),
-                                                                                result.message(),
-                                                                                result.content(),
-                                                                                result.locked(),
-                                                                                result.lockRemainingMinutes()));
+                                                                .bodyValue(new BatchUnlockResponse(false, "请输入密码",
+                                                                                List.of()));
                                         }
+
+                                        return encryptContentProcessor.verifyBatch(
+                                                        req.blockIds(), req.password(), clientIp)
+                                                        .flatMap(results -> toBatchUnlockResponse(request, results));
+                                })
+                                .onErrorResume(VerifyScheduler.VerifyRejectedException.class, e -> {
+                                        return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                                                        .header(HttpHeaders.RETRY_AFTER,
+                                                                        String.valueOf(e.getRetryAfterSeconds()))
+                                                        .contentType(MediaType.APPLICATION_JSON)
+                                                        .bodyValue(new BatchUnlockResponse(false, e.getMessage(),
+                                                                        List.of()));
                                 })
                                 .onErrorResume(e -> {
-                                        log.error("解锁失败: {}", e.getMessage(), e);
+                                        log.error("批量解锁失败: {}", e.getMessage(), e);
                                         return ServerResponse.ok()
                                                         .contentType(MediaType.APPLICATION_JSON)
-                                                        .bodyValue(new UnlockResponse(false, "解锁失败: " + e.getMessage(),
-                                                                        null, false, 0));
+                                                        .bodyValue(new BatchUnlockResponse(false,
+                                                                        "解锁失败: " + e.getMessage(), List.of()));
                                 });
         }
 
+        /**
+         * 将批量验证结果转换为响应
+         */
+        private Mono<ServerResponse> toBatchUnlockResponse(ServerRequest request,
+                        Map<String, EncryptContentProcessor.VerifyResult> results) {
+                List<BlockUnlockResult> items = new ArrayList<>(results.size());
+                List<String> unlocked = new ArrayList<>();
+                for (var entry : results.entrySet()) {
+                        var result = entry.getValue();
+                        items.add(new BlockUnlockResult(
+                                        entry.getKey(),
+                                        result.success(),
+                                        result.message(),
+                                        result.content(),
+                                        result.locked(),
+                                        result.lockRemainingMinutes()));
+                        if (result.success()) {
+                                unlocked.add(entry.getKey());
+                        }
+                }
+                String message = !unlocked.isEmpty()
+                                ? String.format("已解锁 %d / %d 个区块", unlocked.size(), results.size())
+                                : "没有区块解锁成功";
+                var response = new BatchUnlockResponse(!unlocked.isEmpty(), message, items);
+                return okWithUnlockToken(request, unlocked)
+                                .flatMap(builder -> builder.contentType(MediaType.APPLICATION_JSON)
+                                                .bodyValue(response));
+        }
+
+        /**
+         * 将验证结果转换为响应（成功时更新解锁令牌 Cookie）
+         */
+        private Mono<ServerResponse> toUnlockResponse(ServerRequest request, String blockId,
+                        EncryptContentProcessor.VerifyResult result) {
+                var response = new UnlockResponse(
+                                result.success(),
+                                result.message(),
+                                result.content(),
+                                result.locked(),
+                                result.lockRemainingMinutes());
+                if (result.success()) {
+                        // 解锁成功，把区块加入解锁令牌
+                        return okWithUnlockToken(request, List.of(blockId))
+                                        .flatMap(builder -> builder.contentType(MediaType.APPLICATION_JSON)
+                                                        .bodyValue(response));
+                }
+                return ServerResponse.ok()
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(response);
+        }
+
         /**
          * 检查区块是否已解锁
          */
         private Mono<ServerResponse> checkUnlockStatus(ServerRequest request) {
                 String blockId = request.pathVariable("blockId");
 
-                boolean isUnlocked = hasUnlockCookie(request, blockId);
-                boolean blockExists = EncryptContentProcessor.blockExists(blockId);
-
-                return ServerResponse.ok()
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .bodyValue(new CheckUnlockResponse(isUnlocked, blockExists));
+                return unlockTokenService.ensureLoaded()
+                                .then(encryptContentProcessor.blockExists(blockId))
+                                .flatMap(blockExists -> ServerResponse.ok()
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .bodyValue(new CheckUnlockResponse(
+                                                                hasUnlockCookie(request, blockId), blockExists)));
         }
 
         /**
@@ -156,31 +253,35 @@ public class EncryptEndpoint implements CustomEndpoint {
         private Mono<ServerResponse> getUnlockedContent(ServerRequest request) {
                 String blockId = request.pathVariable("blockId");
 
-                // 检查是否有解锁 Cookie
-                if (!hasUnlockCookie(request, blockId)) {
-                        return ServerResponse.ok()
-                                        .contentType(MediaType.APPLICATION_JSON)
-                                        .bodyValue(new UnlockResponse(false, "未解锁或会话已过期", null, false, 0));
-                }
-
-                // 获取内容
-                String content = EncryptContentProcessor.getContentByBlockId(blockId);
-                if (content == null) {
-                        return ServerResponse.ok()
-                                        .contentType(MediaType.APPLICATION_JSON)
-                                        .bodyValue(new UnlockResponse(false, "加密区块不存在", null, false, 0));
-                }
+                return unlockTokenService.ensureLoaded().then(Mono.defer(() -> {
+                        // 检查解锁令牌
+                        if (!hasUnlockCookie(request, blockId)) {
+                                return ServerResponse.ok()
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .bodyValue(new UnlockResponse(false, "未解锁或会话已过期", null, false, 0));
+                        }
+                        return readUnlockedContent(blockId);
+                }));
+        }
 
-                return ServerResponse.ok()
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .bodyValue(new UnlockResponse(true, "获取成功", content, false, 0));
+        /**
+         * 获取内容（内存未命中时从存储重新读取）
+         */
+        private Mono<ServerResponse> readUnlockedContent(String blockId) {
+                return encryptContentProcessor.getContentByBlockId(blockId)
+                                .flatMap(content -> ServerResponse.ok()
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .bodyValue(new UnlockResponse(true, "获取成功", content, false, 0)))
+                                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .bodyValue(new UnlockResponse(false, "加密区块不存在", null, false, 0))));
         }
 
         /**
          * 获取安全配置
          */
         private Mono<ServerResponse> getSecurityConfig(ServerRequest request) {
-                var config = EncryptContentProcessor.getSecurityConfig();
+                var config = encryptContentProcessor.getSecurityConfig();
                 return ServerResponse.ok()
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .bodyValue(new SecurityConfigResponse(
@@ -189,25 +290,50 @@ public class EncryptEndpoint implements CustomEndpoint {
         }
 
         /**
-         * 创建解锁 Cookie
+         * 成功响应：把新解锁的区块并入现有令牌重新签发，并清除旧版的逐区块 Cookie
+         */
+        private Mono<ServerResponse.BodyBuilder> okWithUnlockToken(ServerRequest request,
+                        List<String> blockIds) {
+                if (blockIds.isEmpty()) {
+                        return Mono.just(ServerResponse.ok());
+                }
+                return unlockTokenService.ensureLoaded().then(Mono.fromSupplier(() -> {
+                        var builder = ServerResponse.ok()
+                                        .cookie(createUnlockCookie(
+                                                        unlockTokenService.issue(unlockToken(request), blockIds)));
+                        request.cookies().keySet().stream()
+                                        .filter(name -> name.startsWith(LEGACY_COOKIE_PREFIX))
+                                        .forEach(name -> builder.cookie(ResponseCookie.from(name, "")
+                                                        .maxAge(0)
+                                                        .path("/")
+                                                        .build()));
+                        return builder;
+                }));
+        }
+
+        /**
+         * 创建解锁令牌 Cookie
          */
-        private ResponseCookie createUnlockCookie(String blockId) {
-                return ResponseCookie.from(UNLOCK_COOKIE_PREFIX + blockId, "1")
-                                .maxAge(COOKIE_MAX_AGE)
+        private ResponseCookie createUnlockCookie(String token) {
+                return ResponseCookie.from(UnlockTokenService.COOKIE_NAME, token)
+                                .maxAge(UnlockTokenService.TOKEN_TTL)
                                 .path("/")
-                                .httpOnly(false) // 允许 JS 访问以便前端检查
+                                .httpOnly(false) // 允许 JS 读取区块列表以便前端检查（无法伪造签名）
                                 .secure(false) // 开发环境不强制 HTTPS
                                 .sameSite("Lax")
                                 .build();
         }
 
         /**
-         * 检查是否有解锁 Cookie
+         * 检查解锁令牌：一次签名校验加一次成员查找
          */
         private boolean hasUnlockCookie(ServerRequest request, String blockId) {
-                String cookieName = UNLOCK_COOKIE_PREFIX + blockId;
-                List<HttpCookie> cookies = request.cookies().get(cookieName);
-                return cookies != null && !cookies.isEmpty();
+                return unlockTokenService.contains(unlockToken(request), blockId);
+        }
+
+        private static String unlockToken(ServerRequest request) {
+                HttpCookie cookie = request.cookies().getFirst(UnlockTokenService.COOKIE_NAME);
+                return cookie != null ? cookie.getValue() : null;
         }
 
         /**
@@ -257,6 +383,31 @@ public class EncryptEndpoint implements CustomEndpoint {
                         int lockRemainingMinutes) {
         }
 
+        /**
+         * @param blockIds 第一个为读者输入密码的目标区块，其余为顺带尝试的区块（未通过时不计失败次数）
+         */
+        public record BatchUnlockRequest(List<String> blockIds, String password) {
+        }
+
+        /**
+         * @param success 是否至少有一个区块解锁成功
+         * @param results 各区块的结果，顺序与请求一致（重复的 blockId 只保留一次）
+         */
+        public record BatchUnlockResponse(
+                        boolean success,
+                        String message,
+                        List<BlockUnlockResult> results) {
+        }
+
+        public record BlockUnlockResult(
+                        String blockId,
+                        boolean success,
+                        String message,
+                        String content,
+                        boolean locked,
+                        int lockRemainingMinutes) {
+        }
+
         public record CheckUnlockResponse(
                         boolean unlocked,
                         boolean blockExists) {
@@ -0,0 +1,136 @@
+package run.halo.encrypt.endpoint;
+
+import static org.springdoc.core.fn.builders.apiresponse.Builder.responseBuilder;
+import static org.springdoc.core.fn.builders.parameter.Builder.parameterBuilder;
+import static run.halo.app.extension.GroupVersion.parseAPIVersion;
+
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springdoc.webflux.core.fn.SpringdocRouteBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.halo.app.core.extension.endpoint.CustomEndpoint;
+import run.halo.encrypt.crypto.KdfCalibrator;
+import run.halo.encrypt.crypto.KdfParameters;
+import run.halo.encrypt.crypto.PasswordHasher;
+
+/**
+ * 密码哈希参数 API 端点
+ * 查看当前生效的算法参数，并在本机实测推算达到目标校验耗时所需的参数（只给出建议，不修改设置）
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KdfEndpoint implements CustomEndpoint {
+
+    // 目标耗时范围（毫秒）
+    private static final long MIN_TARGET_MILLIS = 10;
+    private static final long MAX_TARGET_MILLIS = 2000;
+    private static final long DEFAULT_TARGET_MILLIS = 100;
+
+    private final PasswordHasher passwordHasher;
+    private final KdfCalibrator calibrator;
+
+    @Override
+    public RouterFunction<ServerResponse> endpoint() {
+        final var tag = "KdfV1alpha1";
+        return SpringdocRouteBuilder.route()
+                // 当前生效的参数
+                .GET("kdf/current", this::getCurrent,
+                        builder -> builder.operationId("GetKdfParameters")
+                                .description("获取当前生效的密码哈希参数")
+                                .tag(tag)
+                                .response(responseBuilder()
+                                        .implementation(KdfResponse.class)))
+                // 校准
+                .GET("kdf/calibrate", this::calibrate,
+                        builder -> builder.operationId("CalibrateKdf")
+                                .description("实测推算达到目标校验耗时的密码哈希参数")
+                                .tag(tag)
+                                .parameter(parameterBuilder()
+                                        .in(ParameterIn.QUERY)
+                                        .name("algorithm")
+                                        .description("算法：bcrypt / pbkdf2 / argon2"))
+                                .parameter(parameterBuilder()
+                                        .in(ParameterIn.QUERY)
+                                        .name("targetMillis")
+                                        .description("目标单次校验耗时（毫秒）"))
+                                .response(responseBuilder()
+                                        .implementation(CalibrationResponse.class)))
+                .build();
+    }
+
+    @Override
+    public run.halo.app.extension.GroupVersion groupVersion() {
+        return parseAPIVersion("encrypt.halo.run/v1alpha1");
+    }
+
+    /**
+     * 获取当前生效的参数
+     */
+    private Mono<ServerResponse> getCurrent(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new KdfResponse(passwordHasher.effective()));
+    }
+
+    /**
+     * 校准（实测耗时较长，在弹性线程池中执行）
+     */
+    private Mono<ServerResponse> calibrate(ServerRequest request) {
+        String algorithm = request.queryParam("algorithm")
+                .orElse(passwordHasher.effective().algorithm());
+        long targetMillis;
+        try {
+            targetMillis = request.queryParam("targetMillis")
+                    .map(Long::parseLong)
+                    .orElse(DEFAULT_TARGET_MILLIS);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CalibrationResponse(false, null, 0, 0, "targetMillis 格式不正确"));
+        }
+        long target = Math.max(MIN_TARGET_MILLIS, Math.min(MAX_TARGET_MILLIS, targetMillis));
+
+        return Mono.fromCallable(() -> calibrator.calibrate(algorithm, target))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(calibration -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(new CalibrationResponse(true, calibration.parameters(),
+                                calibration.targetMillis(), calibration.measuredMillis(), null)))
+                .onErrorResume(e -> {
+                    log.warn("密码哈希参数校准失败 - 算法: {}", algorithm, e);
+                    return ServerResponse.badRequest()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(new CalibrationResponse(false, null, target, 0, e.getMessage()));
+                });
+    }
+
+    // ========== DTO 类 ==========
+
+    @Data
+    @AllArgsConstructor
+    public static class KdfResponse {
+        private KdfParameters parameters;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CalibrationResponse {
+        private boolean success;
+        private KdfParameters parameters;
+        private long targetMillis;
+        private double measuredMillis;
+        private String error;
+    }
+}
@@ -29,6 +29,8 @@ import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.plugin.ReactiveSettingFetcher;
 import run.halo.encrypt.model.TotpPassword;
 import run.halo.encrypt.util.TotpUtils;
+import run.halo.encrypt.verify.TotpCodeScheduler;
+import run.halo.encrypt.verify.TotpCodeScheduler.CodeSchedule;
 
 /**
  * TOTP 动态密码 API 端点（支持多密码）
@@ -42,6 +44,7 @@ public class TotpEndpoint implements CustomEndpoint {
 
     private final ReactiveSettingFetcher settingFetcher;
     private final ReactiveExtensionClient client;
+    private final TotpCodeScheduler codeScheduler;
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
     private static final String CONFIG_MAP_NAME = "plugin-encrypt-configMap";
@@ -154,6 +157,7 @@ public class TotpEndpoint implements CustomEndpoint {
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .bodyValue(new DeleteResponse(false, "密码不存在"));
                     }
+                    codeScheduler.remove(TotpCodeScheduler.GLOBAL_PREFIX + id);
                     return savePasswords(passwords)
                             .then(ServerResponse.ok()
                                     .contentType(MediaType.APPLICATION_JSON)
@@ -177,29 +181,24 @@ public class TotpEndpoint implements CustomEndpoint {
                     if (first.isEmpty()) {
                         return ServerResponse.ok()
                                 .contentType(MediaType.APPLICATION_JSON)
-                                .bodyValue(new TotpResponse(false, null, null, null, null, "无可用密码，请先创建"));
+                                .bodyValue(new TotpResponse(false, null, null, null, null, null, "无可用密码，请先创建"));
                     }
 
                     TotpPassword password = first.get();
-                    String code = TotpUtils.getCodeByCreationTime(
-                            password.getSecret(),
-                            password.getCreatedAt(),
-                            password.getDurationDays());
-                    String remaining = TotpUtils.getRemainingByCreation(
-                            password.getCreatedAt(),
-                            password.getDurationDays());
-                    String expiresAt = TotpUtils.getExpirationTimeByCreation(
-                            password.getCreatedAt(),
-                            password.getDurationDays()).toString();
+                    CodeSchedule schedule = schedule(password);
+                    String code = TotpUtils.formatCode(schedule.currentCode());
+                    String nextCode = TotpUtils.formatCode(schedule.nextCode());
+                    String remaining = TotpUtils.formatRemaining(codeScheduler.remaining(schedule));
+                    String expiresAt = schedule.expiresAt().toString();
 
                     return ServerResponse.ok()
                             .contentType(MediaType.APPLICATION_JSON)
-                            .bodyValue(new TotpResponse(true, code, expiresAt, remaining,
+                            .bodyValue(new TotpResponse(true, code, nextCode, expiresAt, remaining,
                                     password.getName() + " (" + password.getDurationDays() + "天)", null));
                 })
                 .switchIfEmpty(ServerResponse.ok()
                         .contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(new TotpResponse(false, null, null, null, null, "请先创建动态密码")));
+                        .bodyValue(new TotpResponse(false, null, null, null, null, null, "请先创建动态密码")));
     }
 
     /**
@@ -241,16 +240,10 @@ public class TotpEndpoint implements CustomEndpoint {
      * 转换为响应 DTO
      */
     private PasswordInfo toPasswordInfo(TotpPassword password) {
-        String code = TotpUtils.getCodeByCreationTime(
-                password.getSecret(),
-                password.getCreatedAt(),
-                password.getDurationDays());
-        String remaining = TotpUtils.getRemainingByCreation(
-                password.getCreatedAt(),
-                password.getDurationDays());
-        LocalDateTime expiresAt = TotpUtils.getExpirationTimeByCreation(
-                password.getCreatedAt(),
-                password.getDurationDays());
+        CodeSchedule schedule = schedule(password);
+        String code = TotpUtils.formatCode(schedule.currentCode());
+        String remaining = TotpUtils.formatRemaining(codeScheduler.remaining(schedule));
+        LocalDateTime expiresAt = schedule.expiresAt();
 
         return new PasswordInfo(
                 password.getId(),
@@ -262,6 +255,14 @@ public class TotpEndpoint implements CustomEndpoint {
                 password.getCreatedAt().toString());
     }
 
+    /**
+     * 当前周期（由周期调度预先计算）
+     */
+    private CodeSchedule schedule(TotpPassword password) {
+        return codeScheduler.schedule(TotpCodeScheduler.GLOBAL_PREFIX + password.getId(), password.getSecret(),
+                password.getCreatedAt(), password.getDurationDays());
+    }
+
     // ========== DTO 类 ==========
 
     @Data
@@ -310,6 +311,7 @@ public class TotpEndpoint implements CustomEndpoint {
     public static class TotpResponse {
         private boolean enabled;
         private String code;
+        private String nextCode;
         private String expiresAt;
         private String remaining;
         private String periodDescription;
@@ -0,0 +1,91 @@
+package run.halo.encrypt.extension;
+
+import static io.swagger.v3.oas.annotations.media.Schema.RequiredMode.REQUIRED;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import run.halo.app.extension.AbstractExtension;
+import run.halo.app.extension.GVK;
+
+/**
+ * 区块 TOTP 动态密码配置
+ * 每个区块一个对象，metadata.name 由 blockId 确定（见 {@link #nameOf(String)}），便于按 ID 直接读写
+ *
+ * @author Developer
+ */
+@Data
+@ToString(callSuper = true)
+@GVK(kind = BlockTotp.KIND, group = "encrypt.halo.run", version = "v1alpha1", singular = "blocktotp", plural = "blocktotps")
+@EqualsAndHashCode(callSuper = true)
+public class BlockTotp extends AbstractExtension {
+
+    public static final String KIND = "BlockTotp";
+
+    // 可直接用作 metadata.name 的 blockId（小写字母、数字和连字符）
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9]([-a-z0-9]{0,61}[a-z0-9])?");
+    private static final String HASHED_NAME_PREFIX = "blocktotp-";
+
+    @Schema(requiredMode = REQUIRED)
+    private BlockTotpSpec spec;
+
+    /**
+     * blockId 对应的 metadata.name
+     * 符合命名规则的 blockId 直接使用，其他取 SHA-256 的前 16 字节
+     */
+    public static String nameOf(String blockId) {
+        if (NAME_PATTERN.matcher(blockId).matches()) {
+            return blockId;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(blockId.getBytes(StandardCharsets.UTF_8));
+            return HASHED_NAME_PREFIX + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    @Data
+    public static class BlockTotpSpec {
+
+        /**
+         * 区块 TOTP ID（与区块的 totp-id 属性对应）
+         */
+        @Schema(requiredMode = REQUIRED)
+        private String blockId;
+
+        /**
+         * Base32 密钥
+         */
+        @Schema(requiredMode = REQUIRED)
+        private String secret;
+
+        /**
+         * 密码周期（天）
+         */
+        @Schema(requiredMode = REQUIRED)
+        private int durationDays;
+
+        /**
+         * 创建时间（ISO 本地时间，周期从此时开始计算）
+         */
+        @Schema(requiredMode = REQUIRED)
+        private String createdAt;
+
+        /**
+         * 显示名称
+         */
+        private String label;
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled;
+    }
+}
@@ -73,5 +73,10 @@ public class EncryptBlock extends AbstractExtension {
          * 提示文字（显示在解锁界面）
          */
         private String hint;
+
+        /**
+         * 区块 TOTP ID（totp-id 属性），未设置时为空
+         */
+        private String totpId;
     }
 }
@@ -19,6 +19,7 @@ import run.halo.app.core.extension.content.Post;
 import run.halo.app.event.post.PostPublishedEvent;
 import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.plugin.ReactiveSettingFetcher;
+import run.halo.encrypt.util.ExcerptSanitizer;
 
 /**
  * 统一的摘要保护监听器
@@ -46,11 +47,6 @@ public class UnifiedExcerptProtectionListener {
     // 全文加密 annotation
     private static final String ANNOTATION_PASSWORD = "encrypt.halo.run/password";
 
-    // 匹配 [encrypt] 标签
-    private static final Pattern ENCRYPT_TAG_PATTERN = Pattern.compile(
-            "\\[encrypt[^\\]]*\\]",
-            Pattern.CASE_INSENSITIVE);
-
     // 匹配 <!--encrypt:full--> 注释
     private static final Pattern ENCRYPT_FULL_PATTERN = Pattern.compile(
             "(?:<!--|&lt;!--)\\s*encrypt:full",
@@ -77,7 +73,8 @@ public class UnifiedExcerptProtectionListener {
         if (annotations != null && "true".equals(annotations.get(EXCERPT_PROTECTED_ANNOTATION))) {
             // 检查摘要是否仍然是保护状态
             var excerpt = post.getSpec().getExcerpt();
-            if (excerpt != null && excerpt.getRaw() != null && excerpt.getRaw().startsWith("🔒")) {
+            if (excerpt != null && excerpt.getRaw() != null
+                    && excerpt.getRaw().startsWith(ExcerptSanitizer.LOCK_PREFIX)) {
                 return Mono.just("已保护");
             }
         }
@@ -104,8 +101,8 @@ public class UnifiedExcerptProtectionListener {
                         return protectExcerpt(post, "此内容需要密码才能查看", "全文加密(注释)");
                     }
 
-                    // 检查部分加密（[encrypt] 标签）
-                    if (ENCRYPT_TAG_PATTERN.matcher(content).find()) {
+                    // 检查部分加密（[encrypt] 标签，忽略大小写）
+                    if (ExcerptSanitizer.containsOpenTagIgnoreCase(content)) {
                         return protectExcerpt(post, "部分内容已加密", "部分加密");
                     }
 
@@ -181,10 +178,10 @@ public class UnifiedExcerptProtectionListener {
         }
 
         String currentExcerpt = excerpt.getRaw();
-        String protectedExcerpt = "🔒 " + hint;
+        String protectedExcerpt = ExcerptSanitizer.LOCK_PREFIX + " " + hint;
 
         // 如果摘要已经被保护，跳过
-        if (currentExcerpt != null && currentExcerpt.startsWith("🔒")) {
+        if (currentExcerpt != null && currentExcerpt.startsWith(ExcerptSanitizer.LOCK_PREFIX)) {
             return Mono.just("摘要已保护");
         }
 
@@ -195,9 +192,11 @@ public class UnifiedExcerptProtectionListener {
             post.getMetadata().setAnnotations(annotations);
         }
 
-        // 备份原始摘要
+        // 备份原始摘要（annotation 对外可见，先清理其中的加密区块和密码）
         if (!annotations.containsKey(ORIGINAL_EXCERPT_ANNOTATION) && currentExcerpt != null) {
-            annotations.put(ORIGINAL_EXCERPT_ANNOTATION, currentExcerpt);
+            String backup = ExcerptSanitizer.containsEncryptTag(currentExcerpt)
+                    ? ExcerptSanitizer.sanitize(currentExcerpt) : currentExcerpt;
+            annotations.put(ORIGINAL_EXCERPT_ANNOTATION, backup);
         }
         annotations.put(EXCERPT_PROTECTED_ANNOTATION, "true");
 
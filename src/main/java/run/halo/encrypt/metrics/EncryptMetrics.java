@@ -0,0 +1,194 @@
+package run.halo.encrypt.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 插件指标
+ * 注册到 Halo 的 MeterRegistry（不可用时使用全局 registry，Spring Boot 会将其并入 Prometheus 输出），
+ * 所有指标带 plugin=encrypt 标签，插件停止时全部移除
+ *
+ * 指标：
+ * encrypt.handler.render（处理器耗时，handler）、encrypt.post.blocks（每篇文章的区块数）、
+ * encrypt.kdf（密码哈希耗时，algorithm/operation）、encrypt.unlock（解锁结果，method/outcome）、
+ * encrypt.unlock.verifier（各验证方式命中/未命中/跳过，verifier/result）、
+ * encrypt.lockouts（锁定次数）、encrypt.cache.*（缓存命中/未命中/淘汰/命中率/占用，cache）
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class EncryptMetrics {
+
+    private static final String PREFIX = "encrypt.";
+    private static final String PLUGIN_TAG = "plugin";
+    private static final String PLUGIN_NAME = "encrypt";
+
+    /**
+     * 解锁方式标签
+     */
+    public static final String METHOD_BLOCK_TOTP = "block_totp";
+    public static final String METHOD_GLOBAL_TOTP = "global_totp";
+    public static final String METHOD_MASTER_KEY = "master_key";
+    public static final String METHOD_BLOCK_PASSWORD = "block_password";
+    public static final String METHOD_BLOCK_PASSWORD_MEMO = "block_password_memo";
+    public static final String METHOD_NONE = "none";
+
+    /**
+     * 解锁结果标签
+     */
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+    public static final String OUTCOME_LOCKED = "locked";
+    public static final String OUTCOME_NOT_FOUND = "not_found";
+    public static final String OUTCOME_THROTTLED = "throttled";
+
+    /**
+     * 单个验证方式的结果标签：通过 / 未通过 / 预检查跳过
+     */
+    public static final String VERIFIER_HIT = "hit";
+    public static final String VERIFIER_MISS = "miss";
+    public static final String VERIFIER_SKIP = "skip";
+
+    private final MeterRegistry registry;
+
+    // 已注册的指标（按名称 + 标签缓存，插件停止时移除）
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final Set<Meter> boundMeters = ConcurrentHashMap.newKeySet();
+
+    public EncryptMetrics(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registry = registryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    /**
+     * 统计处理器耗时（从订阅开始到完成）
+     *
+     * @param handler 处理器名称（article / category / content）
+     */
+    public <T> Mono<T> timeRender(String handler, Supplier<Mono<T>> source) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return source.get().doFinally(signal -> sample.stop(renderTimer(handler)));
+        });
+    }
+
+    /**
+     * 记录单篇文章的加密区块数
+     */
+    public void recordBlocksPerPost(int blocks) {
+        DistributionSummary summary = (DistributionSummary) meters.computeIfAbsent("post.blocks",
+                key -> DistributionSummary.builder(PREFIX + "post.blocks")
+                        .description("每篇文章渲染的加密区块数")
+                        .baseUnit("blocks")
+                        .tag(PLUGIN_TAG, PLUGIN_NAME)
+                        .register(registry));
+        summary.record(blocks);
+    }
+
+    /**
+     * 统计密码哈希耗时
+     *
+     * @param algorithm bcrypt / pbkdf2 / argon2
+     * @param operation encode / match
+     */
+    public <T> T timeKdf(String algorithm, String operation, Supplier<T> task) {
+        Timer timer = (Timer) meters.computeIfAbsent("kdf:" + algorithm + ":" + operation,
+                key -> Timer.builder(PREFIX + "kdf")
+                        .description("密码哈希/校验耗时")
+                        .tag(PLUGIN_TAG, PLUGIN_NAME)
+                        .tag("algorithm", algorithm)
+                        .tag("operation", operation)
+                        .register(registry));
+        return timer.record(task);
+    }
+
+    /**
+     * 记录解锁结果
+     */
+    public void recordUnlock(String method, String outcome) {
+        counter("unlock:" + method + ":" + outcome, PREFIX + "unlock", "解锁请求结果",
+                "method", method, "outcome", outcome).increment();
+    }
+
+    /**
+     * 记录单个验证方式的结果
+     */
+    public void recordVerifier(String verifier, String result) {
+        counter("verifier:" + verifier + ":" + result, PREFIX + "unlock.verifier", "各验证方式的命中情况",
+                "verifier", verifier, "result", result).increment();
+    }
+
+    /**
+     * 记录一次锁定（失败次数达到上限）
+     */
+    public void recordLockout() {
+        counter("lockouts", PREFIX + "lockouts", "密码错误达到上限导致的锁定次数").increment();
+    }
+
+    /**
+     * 绑定缓存统计：命中、未命中、淘汰为计数器，命中率、条目数和占用字节为仪表
+     *
+     * @param cache 缓存名称（processed-content / blocks / placeholder）
+     */
+    public void bindCache(String cache, Supplier<WeightedLruCache.Stats> stats) {
+        bind(FunctionCounter.builder(PREFIX + "cache.hits", stats, s -> s.get().hits()), cache);
+        bind(FunctionCounter.builder(PREFIX + "cache.misses", stats, s -> s.get().misses()), cache);
+        bind(FunctionCounter.builder(PREFIX + "cache.evictions", stats, s -> s.get().evictions()), cache);
+        bind(Gauge.builder(PREFIX + "cache.hit.ratio", stats, s -> s.get().hitRate()), cache);
+        bind(Gauge.builder(PREFIX + "cache.size", stats, s -> s.get().size()), cache);
+        bind(Gauge.builder(PREFIX + "cache.weight", stats, s -> s.get().weight()).baseUnit("bytes"), cache);
+    }
+
+    /**
+     * 移除本插件注册的全部指标（插件停止时调用，避免 registry 持有已卸载的类）
+     */
+    public void close() {
+        meters.values().forEach(registry::remove);
+        boundMeters.forEach(registry::remove);
+        meters.clear();
+        boundMeters.clear();
+        log.debug("已移除插件指标");
+    }
+
+    private Timer renderTimer(String handler) {
+        return (Timer) meters.computeIfAbsent("render:" + handler,
+                key -> Timer.builder(PREFIX + "handler.render")
+                        .description("文章内容处理器耗时")
+                        .tag(PLUGIN_TAG, PLUGIN_NAME)
+                        .tag("handler", handler)
+                        .register(registry));
+    }
+
+    private Counter counter(String key, String name, String description, String... tags) {
+        return (Counter) meters.computeIfAbsent(key,
+                k -> Counter.builder(name)
+                        .description(description)
+                        .tag(PLUGIN_TAG, PLUGIN_NAME)
+                        .tags(tags)
+                        .register(registry));
+    }
+
+    // stats 多为方法引用，需强引用以免被回收后读数变为 NaN
+    private void bind(FunctionCounter.Builder<?> builder, String cache) {
+        boundMeters.add(builder.strongReference(true).tag(PLUGIN_TAG, PLUGIN_NAME).tag("cache", cache).register(registry));
+    }
+
+    private void bind(Gauge.Builder<?> builder, String cache) {
+        boundMeters.add(builder.strongReference(true).tag(PLUGIN_TAG, PLUGIN_NAME).tag("cache", cache).register(registry));
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 import run.halo.app.theme.ReactivePostContentHandler;
+import run.halo.encrypt.metrics.EncryptMetrics;
 
 /**
  * 全文加密处理器
@@ -45,14 +46,28 @@ public class ArticleEncryptProcessor implements ReactivePostContentHandler {
             "([\\w-]+)\\s*=\\s*\"([^\"]*?)\"",
             Pattern.DOTALL);
 
+    private final ProcessedContentCache contentCache;
+    private final EncryptMetrics metrics;
+
     @Override
     public Mono<PostContentContext> handle(PostContentContext context) {
+        return metrics.timeRender("article", () -> process(context));
+    }
+
+    private Mono<PostContentContext> process(PostContentContext context) {
         String content = context.getContent();
 
         if (content == null || content.isEmpty()) {
             return Mono.just(context);
         }
 
+        // 命中处理缓存时直接使用最终结果，后续处理器会识别并跳过
+        var cached = contentCache.get(context);
+        if (cached != null) {
+            cached.applyTo(context);
+            return Mono.just(context);
+        }
+
         // 优先检查 HTML 注释格式（编辑器插入的）
         if (content.contains("encrypt:full")) {
             return processCommentFormat(context);
@@ -0,0 +1,210 @@
+package run.halo.encrypt.processor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.encrypt.extension.BlockTotp;
+
+/**
+ * 区块 TOTP 配置注册表
+ * 以 blockId 为键在内存中保存所有 {@link BlockTotp}，解锁验证直接读取；
+ * 插件启动时全量加载一次，之后由 watch 事件逐个更新，单个区块变更不再重新解析全部配置；
+ * 未命中时可通过 {@link #fetch(String)} 按名称直接读取
+ *
+ * 旧版本把所有区块 TOTP 保存在 {@link #LEGACY_CONFIG_MAP} 的一个 JSON 字符串中，
+ * 首次加载时逐个迁移为 BlockTotp，并在旧 ConfigMap 上标记已迁移（保留旧数据以便回退版本）
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlockTotpRegistry {
+
+    public static final String LEGACY_CONFIG_MAP = "encrypt-block-totp";
+    private static final String LEGACY_BLOCKS_KEY = "blocks";
+    private static final String MIGRATED_ANNOTATION = "encrypt.halo.run/migrated-to-blocktotps";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ReactiveExtensionClient client;
+
+    // blockId -> 配置
+    private final Map<String, BlockTotpEntry> entries = new ConcurrentHashMap<>();
+    // metadata.name -> blockId（删除事件只带 name）
+    private final Map<String, String> blockIdsByName = new ConcurrentHashMap<>();
+
+    /**
+     * 区块 TOTP 配置，不存在时返回 null
+     */
+    public BlockTotpEntry get(String blockId) {
+        return entries.get(blockId);
+    }
+
+    /**
+     * 注册表中没有时直接读取该区块的 BlockTotp 并加入注册表（全量加载完成前或加载失败时使用）
+     */
+    public Mono<BlockTotpEntry> fetch(String blockId) {
+        BlockTotpEntry entry = entries.get(blockId);
+        if (entry != null) {
+            return Mono.just(entry);
+        }
+        return client.fetch(BlockTotp.class, BlockTotp.nameOf(blockId))
+                .filter(extension -> extension.getMetadata().getDeletionTimestamp() == null)
+                .flatMap(extension -> {
+                    put(extension);
+                    return Mono.justOrEmpty(entries.get(blockId));
+                });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 迁移旧配置并全量加载
+     *
+     * @return 加载的配置数
+     */
+    public Mono<Integer> load() {
+        return migrateLegacyConfigMap()
+                .thenMany(Flux.defer(() -> client.listAll(BlockTotp.class, new ListOptions(), Sort.unsorted())))
+                .doOnNext(this::put)
+                .count()
+                .map(Long::intValue);
+    }
+
+    /**
+     * 按 metadata.name 重新读取单个配置（watch 事件触发），已删除时移除
+     *
+     * @return 被移除的配置（未移除时为空）
+     */
+    public Mono<BlockTotpEntry> refresh(String name) {
+        return client.fetch(BlockTotp.class, name)
+                .filter(extension -> extension.getMetadata().getDeletionTimestamp() == null)
+                .map(extension -> {
+                    put(extension);
+                    return Optional.<BlockTotpEntry>empty();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> Optional.ofNullable(removeByName(name))))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * 写入或更新配置（写入 BlockTotp 成功后立即调用，无需等待 watch 事件）
+     */
+    public void put(BlockTotp extension) {
+        BlockTotp.BlockTotpSpec spec = extension.getSpec();
+        String name = extension.getMetadata().getName();
+        if (spec == null || spec.getBlockId() == null) {
+            return;
+        }
+        LocalDateTime createdAt;
+        try {
+            createdAt = LocalDateTime.parse(spec.getCreatedAt());
+        } catch (DateTimeParseException | NullPointerException e) {
+            log.warn("区块 TOTP 创建时间无效，已忽略 - blockId: {}, createdAt: {}", spec.getBlockId(),
+                    spec.getCreatedAt());
+            removeByName(name);
+            return;
+        }
+        entries.put(spec.getBlockId(), new BlockTotpEntry(spec.getBlockId(), spec.getSecret(), createdAt,
+                spec.getDurationDays(), spec.getLabel(), spec.isEnabled()));
+        blockIdsByName.put(name, spec.getBlockId());
+    }
+
+    /**
+     * 按 metadata.name 移除配置
+     */
+    public BlockTotpEntry removeByName(String name) {
+        String blockId = blockIdsByName.remove(name);
+        return blockId != null ? entries.remove(blockId) : null;
+    }
+
+    /**
+     * 把旧 ConfigMap 中尚未迁移的配置逐个创建为 BlockTotp（已存在的不覆盖），完成后标记
+     * 失败时保留旧数据，下次启动重试（创建前先检查是否存在，可重复执行）
+     */
+    private Mono<Void> migrateLegacyConfigMap() {
+        return client.fetch(ConfigMap.class, LEGACY_CONFIG_MAP)
+                .filter(configMap -> configMap.getMetadata().getAnnotations() == null
+                        || !configMap.getMetadata().getAnnotations().containsKey(MIGRATED_ANNOTATION))
+                .flatMap(configMap -> {
+                    Map<String, BlockTotp.BlockTotpSpec> legacy = readLegacy(configMap);
+                    return Flux.fromIterable(legacy.entrySet())
+                            .concatMap(entry -> createIfAbsent(entry.getKey(), entry.getValue()))
+                            .then(Mono.defer(() -> markMigrated(configMap)))
+                            .doOnSuccess(v -> log.info("已将 {} 个区块 TOTP 配置迁移为 BlockTotp", legacy.size()));
+                })
+                .onErrorResume(e -> {
+                    log.warn("迁移区块 TOTP 配置失败，下次启动时重试: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Map<String, BlockTotp.BlockTotpSpec> readLegacy(ConfigMap configMap) {
+        Map<String, String> data = configMap.getData();
+        String json = data != null ? data.get(LEGACY_BLOCKS_KEY) : null;
+        if (json == null || json.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            Map<String, BlockTotp.BlockTotpSpec> legacy = OBJECT_MAPPER.readValue(json,
+                    new TypeReference<LinkedHashMap<String, BlockTotp.BlockTotpSpec>>() {
+                    });
+            legacy.forEach((blockId, spec) -> spec.setBlockId(blockId));
+            legacy.values().removeIf(spec -> spec.getBlockId() == null);
+            return legacy;
+        } catch (Exception e) {
+            log.warn("解析旧区块 TOTP 配置失败: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private Mono<BlockTotp> createIfAbsent(String blockId, BlockTotp.BlockTotpSpec spec) {
+        String name = BlockTotp.nameOf(blockId);
+        return client.fetch(BlockTotp.class, name)
+                .switchIfEmpty(Mono.defer(() -> {
+                    BlockTotp extension = new BlockTotp();
+                    extension.setMetadata(new Metadata());
+                    extension.getMetadata().setName(name);
+                    extension.setSpec(spec);
+                    return client.create(extension);
+                }));
+    }
+
+    private Mono<Void> markMigrated(ConfigMap configMap) {
+        Map<String, String> annotations = configMap.getMetadata().getAnnotations();
+        if (annotations == null) {
+            annotations = new HashMap<>();
+            configMap.getMetadata().setAnnotations(annotations);
+        }
+        annotations.put(MIGRATED_ANNOTATION, "true");
+        return client.update(configMap).then();
+    }
+
+    /**
+     * 区块 TOTP 配置（创建时间已解析）
+     */
+    public record BlockTotpEntry(String blockId, String secret, LocalDateTime createdAt, int durationDays,
+            String label, boolean enabled) {
+    }
+}
@@ -0,0 +1,304 @@
+package run.halo.encrypt.processor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.encrypt.extension.BlockTotp;
+
+/**
+ * 区块 TOTP 合并写入
+ * 生成和删除请求先进入队列，同一区块在一个合并窗口内的多次保存（或多次删除）合并为一次写入，
+ * 由后台定时批量写入；每个窗口最多写入固定数量的区块，且同一区块同时只有一个写入在进行，
+ * 因此无论并发请求多少，对 BlockTotp 的写入速率都有上限
+ *
+ * 写入时总是先读取最新版本再应用修改，版本冲突时重新读取并重试；
+ * 每个调用方的 Mono 在包含其修改的写入成功后才完成，写入失败、被之后的修改覆盖或插件停止时以异常结束
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlockTotpWriter {
+
+    // 合并窗口
+    private static final Duration WINDOW = Duration.ofMillis(200);
+    // 每个窗口最多写入的区块数，未写入的留到下一个窗口
+    private static final int MAX_WRITES_PER_WINDOW = 16;
+    private static final int WRITE_CONCURRENCY = 4;
+    // 等待写入的区块数上限，超出时拒绝新区块的修改
+    private static final int MAX_PENDING_BLOCKS = 1024;
+
+    private static final int MAX_CONFLICT_RETRIES = 5;
+    private static final Duration CONFLICT_BACKOFF = Duration.ofMillis(50);
+
+    private static final Duration STOP_FLUSH_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(20);
+
+    private final ReactiveExtensionClient client;
+    private final BlockTotpRegistry blockTotpRegistry;
+
+    // blockId -> 合并后的待写修改（按加入顺序写入，受 this 锁保护）
+    private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    // 正在写入的区块（受 this 锁保护）
+    private final Set<String> inFlight = new HashSet<>();
+
+    private volatile Disposable flusher;
+    // 停止后拒绝新的修改（受 this 锁保护）
+    private boolean stopped;
+
+    /**
+     * 保存区块 TOTP 配置（不存在时创建）
+     * 同一窗口内的多次保存合并为最后一次，所有保存者都收到实际写入的 BlockTotp（据此生成响应，而不是各自提交的配置）；
+     * 保存之后同一窗口内又被删除时，保存者以 {@link SupersededWriteException} 失败
+     *
+     * @return 写入成功后发出已写入的 BlockTotp
+     */
+    public Mono<BlockTotp> save(String blockId, BlockTotp.BlockTotpSpec spec) {
+        return Mono.defer(() -> {
+            spec.setBlockId(blockId);
+            Sinks.One<BlockTotp> waiter = Sinks.one();
+            return enqueue(blockId, spec, pending -> pending.saveWaiters.add(waiter))
+                    .then(waiter.asMono());
+        });
+    }
+
+    /**
+     * 删除区块 TOTP 配置
+     * 删除之后同一窗口内又被保存时，删除者以 {@link SupersededWriteException} 失败
+     *
+     * @return 删除成功后发出 true，配置不存在时发出 false
+     */
+    public Mono<Boolean> delete(String blockId) {
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> waiter = Sinks.one();
+            return enqueue(blockId, null, pending -> pending.deleteWaiters.add(waiter))
+                    .then(waiter.asMono());
+        });
+    }
+
+    /**
+     * 启动后台写入
+     */
+    public synchronized void start() {
+        stopped = false;
+        if (flusher != null && !flusher.isDisposed()) {
+            return;
+        }
+        flusher = Flux.interval(WINDOW)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    /**
+     * 停止后台写入：不再接受新的修改，等待队列和正在进行的写入完成，
+     * 超时后仍未写入的修改以异常结束，不会让调用方一直等待
+     */
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+        }
+        try {
+            drain().block(STOP_FLUSH_TIMEOUT);
+        } catch (Exception e) {
+            log.warn("停止时写入区块 TOTP 失败: {}", e.getMessage());
+        }
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.dispose();
+                flusher = null;
+            }
+        }
+        List<PendingWrite> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("插件停止，{} 个区块 TOTP 修改未写入", remaining.size());
+            IllegalStateException error = new IllegalStateException("插件已停止，区块 TOTP 修改未写入");
+            remaining.forEach(pending -> pending.fail(error));
+        }
+    }
+
+    /**
+     * 加入队列并登记等待者
+     * 与队列中同一区块的修改类型相同（都是保存或都是删除）时合并；类型不同时先到的修改不会被写入，其等待者立即失败
+     *
+     * @param spec 新配置，null 表示删除
+     */
+    private Mono<Void> enqueue(String blockId, BlockTotp.BlockTotpSpec spec, Consumer<PendingWrite> addWaiter) {
+        PendingWrite superseded = null;
+        synchronized (this) {
+            if (stopped) {
+                return Mono.error(new IllegalStateException("区块 TOTP 写入已停止"));
+            }
+            PendingWrite pending = pendingWrites.get(blockId);
+            if (pending != null && pending.isDelete() != (spec == null)) {
+                superseded = pendingWrites.remove(blockId);
+                pending = null;
+            }
+            if (pending == null) {
+                if (pendingWrites.size() >= MAX_PENDING_BLOCKS) {
+                    return Mono.error(new IllegalStateException("区块 TOTP 写入队列已满，请稍后重试"));
+                }
+                pending = new PendingWrite();
+                pendingWrites.put(blockId, pending);
+            }
+            pending.spec = spec;
+            addWaiter.accept(pending);
+        }
+        if (superseded != null) {
+            superseded.fail(new SupersededWriteException(blockId));
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * 反复写入直到队列为空且没有正在进行的写入（只剩正在写入的区块时稍等再检查）
+     */
+    private Mono<Void> drain() {
+        return Mono.defer(() -> flush().then(Mono.delay(DRAIN_POLL_INTERVAL)))
+                .repeat(() -> !isIdle())
+                .then();
+    }
+
+    private synchronized boolean isIdle() {
+        return pendingWrites.isEmpty() && inFlight.isEmpty();
+    }
+
+    /**
+     * 写入一个窗口的修改：最多 {@link #MAX_WRITES_PER_WINDOW} 个区块，跳过正在写入的区块
+     */
+    private Mono<Void> flush() {
+        Map<String, PendingWrite> batch = new LinkedHashMap<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, PendingWrite>> iterator = pendingWrites.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_WRITES_PER_WINDOW) {
+                Map.Entry<String, PendingWrite> entry = iterator.next();
+                if (inFlight.add(entry.getKey())) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(batch.entrySet())
+                .flatMap(entry -> write(entry.getKey(), entry.getValue()), WRITE_CONCURRENCY)
+                .then()
+                .doOnSuccess(v -> log.debug("已写入 {} 个区块 TOTP", batch.size()));
+    }
+
+    private Mono<Void> write(String blockId, PendingWrite pending) {
+        Mono<Void> operation = pending.isDelete()
+                ? remove(blockId).doOnNext(pending::deleted).then()
+                : upsert(blockId, pending.spec).doOnNext(pending::saved).then();
+        return operation
+                .onErrorResume(e -> {
+                    log.warn("写入区块 TOTP 失败 - blockId: {}, error: {}", blockId, e.getMessage());
+                    pending.fail(e);
+                    return Mono.empty();
+                })
+                // 插件停止超时时写入被取消
+                .doOnCancel(() -> pending.fail(new IllegalStateException("区块 TOTP 写入已取消")))
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        inFlight.remove(blockId);
+                    }
+                });
+    }
+
+    /**
+     * 读取最新版本并替换 spec，不存在时创建；版本冲突时重新读取再写入
+     */
+    private Mono<BlockTotp> upsert(String blockId, BlockTotp.BlockTotpSpec spec) {
+        String name = BlockTotp.nameOf(blockId);
+        return Mono.defer(() -> client.fetch(BlockTotp.class, name)
+                        .flatMap(existing -> {
+                            existing.setSpec(spec);
+                            return client.update(existing);
+                        })
+                        .switchIfEmpty(Mono.defer(() -> {
+                            BlockTotp extension = new BlockTotp();
+                            extension.setMetadata(new Metadata());
+                            extension.getMetadata().setName(name);
+                            extension.setSpec(spec);
+                            return client.create(extension);
+                        })))
+                .retryWhen(conflictRetry())
+                // 立即更新本实例的注册表，不必等待 watch 事件
+                .doOnNext(blockTotpRegistry::put);
+    }
+
+    private Mono<Boolean> remove(String blockId) {
+        String name = BlockTotp.nameOf(blockId);
+        return Mono.defer(() -> client.fetch(BlockTotp.class, name)
+                        .flatMap(client::delete))
+                .retryWhen(conflictRetry())
+                .doOnNext(deleted -> blockTotpRegistry.removeByName(name))
+                .hasElement();
+    }
+
+    private static Retry conflictRetry() {
+        return Retry.backoff(MAX_CONFLICT_RETRIES, CONFLICT_BACKOFF)
+                .filter(OptimisticLockingFailureException.class::isInstance);
+    }
+
+    /**
+     * 修改在写入前被同一区块之后的修改覆盖（保存后又删除，或删除后又保存）
+     */
+    public static class SupersededWriteException extends IllegalStateException {
+
+        public SupersededWriteException(String blockId) {
+            super("区块 TOTP 已被之后的修改覆盖: " + blockId);
+        }
+    }
+
+    /**
+     * 一个区块合并后的待写修改及其全部等待者（同一时刻只有保存者或只有删除者）
+     */
+    private static final class PendingWrite {
+
+        // 最后一次修改的配置，null 表示删除
+        private BlockTotp.BlockTotpSpec spec;
+        private final List<Sinks.One<BlockTotp>> saveWaiters = new ArrayList<>();
+        private final List<Sinks.One<Boolean>> deleteWaiters = new ArrayList<>();
+
+        boolean isDelete() {
+            return spec == null;
+        }
+
+        void saved(BlockTotp stored) {
+            saveWaiters.forEach(waiter -> waiter.tryEmitValue(stored));
+        }
+
+        void deleted(boolean existed) {
+            deleteWaiters.forEach(waiter -> waiter.tryEmitValue(existed));
+        }
+
+        void fail(Throwable error) {
+            saveWaiters.forEach(waiter -> waiter.tryEmitError(error));
+            deleteWaiters.forEach(waiter -> waiter.tryEmitError(error));
+        }
+    }
+}
@@ -16,6 +16,7 @@ import run.halo.app.extension.ListOptions;
 import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.plugin.ReactiveSettingFetcher;
 import run.halo.app.theme.ReactivePostContentHandler;
+import run.halo.encrypt.metrics.EncryptMetrics;
 
 /**
  * 分类加密处理器
@@ -33,9 +34,20 @@ public class CategoryEncryptProcessor implements ReactivePostContentHandler {
 
     private final ReactiveSettingFetcher settingFetcher;
     private final ReactiveExtensionClient client;
+    private final ProcessedContentCache contentCache;
+    private final EncryptMetrics metrics;
 
     @Override
     public Mono<PostContentContext> handle(PostContentContext context) {
+        return metrics.timeRender("category", () -> process(context));
+    }
+
+    private Mono<PostContentContext> process(PostContentContext context) {
+        // 内容来自处理缓存，已是最终结果
+        if (contentCache.isCachedOutput(context)) {
+            return Mono.just(context);
+        }
+
         // 获取文章的分类列表（这是分类的 metadata.name，如 category-xxx）
         List<String> categoryNames = context.getPost().getSpec().getCategories();
 
@@ -0,0 +1,291 @@
+package run.halo.encrypt.processor;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.halo.encrypt.crypto.KdfParameters;
+import run.halo.encrypt.crypto.PasswordHasher;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.processor.EncryptContentProcessor.EncryptedBlock;
+import run.halo.encrypt.util.CompressedText;
+import run.halo.encrypt.util.KeyedDigest;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 加密区块注册表
+ * 以确定性 blockId（内容 + 密码的哈希）为键保存已解析的区块，
+ * 只有区块首次出现或指纹变化时才进行密码哈希，其余渲染直接复用已存储的区块
+ * 新哈希的区块会异步写入 {@link EncryptBlockStore}，插件启动时从中预热；内存未命中时先读取存储再决定是否哈希
+ *
+ * 内存中的区块按内容大小计权，总量受设置中的上限约束，超出时淘汰最久未访问的区块；
+ * 被淘汰的区块在下次访问时从 {@link EncryptBlockStore} 重新读取
+ * 开启压缩存储时，较长的内容以 deflate 压缩保存，仅在解锁成功读取内容时解压
+ *
+ * 同一文章中密码相同的区块共用一个密码哈希（以文章名 + 密码的 HMAC 摘要查找），
+ * 批量解锁时这些区块只需校验一次
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EncryptBlockRegistry {
+
+    // 每个区块除内容外的估算开销（字节）
+    private static final long BLOCK_OVERHEAD_BYTES = 256;
+
+    // 可共用的密码哈希条数
+    private static final int SHARED_HASH_ENTRIES = 4096;
+
+    private final WeightedLruCache<String, EncryptedBlock> blocks = new WeightedLruCache<>(
+            EncryptSettingsSnapshot.DEFAULTS.blockCacheMaxBytes(), EncryptBlockRegistry::weigh);
+
+    // 正在读取或哈希的区块（同一 blockId 的并发渲染只读取/哈希一次）
+    private final Map<String, Mono<EncryptedBlock>> inFlight = new ConcurrentHashMap<>();
+
+    // （文章，密码）摘要 -> 密码哈希（仅在内存中，重启后重新积累）
+    private final KeyedDigest passwordDigest = new KeyedDigest();
+    private final WeightedLruCache<KeyedDigest.Digest, String> sharedHashes =
+            new WeightedLruCache<>(SHARED_HASH_ENTRIES, hash -> 1);
+
+    // 哈希次数 / 复用次数
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder reuseCount = new LongAdder();
+
+    private final EncryptBlockStore blockStore;
+    private final EncryptSettingsProvider settingsProvider;
+    private final EncryptMetrics metrics;
+    private final PasswordHasher passwordHasher;
+
+    /**
+     * 解析区块：已知且指纹一致时直接返回已存储的区块；内存未命中时先从 {@link EncryptBlockStore} 读取，
+     * 仍未找到或指纹不一致时才在弹性线程池上哈希密码并登记
+     * 同一 blockId 的并发渲染共用一次读取/哈希（共享同一个进行中的 Mono，不阻塞渲染线程）
+     *
+     * @param postName 区块所在文章（用于持久化）
+     */
+    public Mono<EncryptedBlock> resolve(String postName, String blockId, String type, String password,
+            String content, String hint, String totpId) {
+        applyMaxWeight();
+
+        EncryptedBlock existing = blocks.get(blockId);
+        if (existing != null && matchesFingerprint(existing, type, content, hint, totpId)) {
+            reuseCount.increment();
+            return Mono.just(existing);
+        }
+
+        boolean[] owner = new boolean[1];
+        Mono<EncryptedBlock> running = inFlight.computeIfAbsent(blockId, id -> {
+            owner[0] = true;
+            return loadOrHash(postName, id, type, password, content, hint, totpId)
+                    .doFinally(signal -> inFlight.remove(id))
+                    .cache();
+        });
+        return running.flatMap(shared -> {
+            if (matchesFingerprint(shared, type, content, hint, totpId)) {
+                if (!owner[0]) {
+                    // 其他渲染正在读取或哈希同一区块，复用其结果
+                    reuseCount.increment();
+                }
+                return Mono.just(shared);
+            }
+            return hash(postName, blockId, type, password, content, hint, totpId);
+        });
+    }
+
+    /**
+     * 查找区块，内存未命中时从持久化存储重新读取
+     */
+    public Mono<EncryptedBlock> find(String blockId) {
+        EncryptedBlock cached = blocks.get(blockId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return blockStore.find(blockId)
+                .map(this::compact)
+                .map(block -> {
+                    EncryptedBlock existing = blocks.putIfAbsent(blockId, block);
+                    return existing != null ? existing : block;
+                });
+    }
+
+    /**
+     * 替换区块的密码哈希（校验成功后按新参数重新哈希时调用）
+     * 仅当内存中的哈希仍为旧值时替换，并异步写回持久化存储
+     */
+    public void updatePasswordHash(String blockId, String oldHash, String newHash) {
+        EncryptedBlock cached = blocks.peek(blockId);
+        if (cached != null && Objects.equals(cached.passwordHash(), oldHash)) {
+            blocks.put(blockId, cached.withPasswordHash(newHash));
+        }
+        blockStore.updatePasswordHash(blockId, oldHash, newHash);
+    }
+
+    /**
+     * 文章重新渲染后清理其名下不再使用的持久化区块（内存中的区块照常按 LRU 淘汰）
+     *
+     * @param blockIds 本次渲染出现的区块
+     */
+    public void retainPostBlocks(String postName, Set<String> blockIds) {
+        if (postName != null) {
+            blockStore.retainPostBlocks(postName, blockIds);
+        }
+    }
+
+    /**
+     * 从持久化存储预热（不覆盖已在内存中的区块）
+     */
+    public Mono<Long> warmUp() {
+        applyMaxWeight();
+        return blockStore.loadHotSet()
+                .map(this::compact)
+                .filter(block -> blocks.putIfAbsent(block.blockId(), block) == null)
+                .count();
+    }
+
+    /**
+     * 内存缓存统计
+     */
+    public WeightedLruCache.Stats cacheStats() {
+        return blocks.stats();
+    }
+
+    /**
+     * 获取哈希/复用及内存占用统计
+     */
+    public RegistryStats stats() {
+        return new RegistryStats(hashCount.sum(), reuseCount.sum(), blocks.stats());
+    }
+
+    /**
+     * 从持久化存储读取指纹一致的区块（内存淘汰后不必重新哈希），否则哈希密码
+     */
+    private Mono<EncryptedBlock> loadOrHash(String postName, String blockId, String type, String password,
+            String content, String hint, String totpId) {
+        return blockStore.find(blockId)
+                .filter(stored -> matchesFingerprint(stored, type, content, hint, totpId))
+                .map(this::compact)
+                .doOnNext(stored -> {
+                    reuseCount.increment();
+                    blocks.put(blockId, stored);
+                })
+                .switchIfEmpty(Mono.defer(() -> hash(postName, blockId, type, password, content, hint, totpId)));
+    }
+
+    /**
+     * 在弹性线程池上哈希密码并登记（密码哈希耗时数十毫秒，不能在事件循环上执行）
+     */
+    private Mono<EncryptedBlock> hash(String postName, String blockId, String type, String password,
+            String content, String hint, String totpId) {
+        return Mono.fromCallable(() -> hashAndStore(postName, blockId, type, password, content, hint, totpId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private EncryptedBlock hashAndStore(String postName, String blockId, String type, String password,
+            String content, String hint, String totpId) {
+        // 存储加密内容（密码按设置的算法哈希，空密码存 null）
+        String passwordHash = password.isEmpty() ? null : passwordHashFor(postName, password);
+        hashCount.increment();
+        EncryptedBlock block = new EncryptedBlock(blockId, type, passwordHash, toBody(content), hint, totpId,
+                EncryptedBlock.fingerprintOf(type, content, hint, totpId));
+        blocks.put(blockId, block);
+        log.debug("登记加密区块 - blockId: {}, type: {}", blockId, type);
+
+        // 新哈希的区块异步持久化
+        if (postName != null) {
+            blockStore.enqueue(postName, block);
+        }
+        return block;
+    }
+
+    /**
+     * 同一文章中已有相同密码的区块时共用其哈希，否则重新计算
+     */
+    private String passwordHashFor(String postName, String password) {
+        if (postName == null) {
+            return encode(password);
+        }
+        KeyedDigest.Digest key = passwordDigest.digest(postName, password);
+        String shared = sharedHashes.get(key);
+        if (shared != null && !passwordHasher.needsRehash(shared)) {
+            return shared;
+        }
+        String passwordHash = encode(password);
+        sharedHashes.put(key, passwordHash);
+        return passwordHash;
+    }
+
+    private String encode(String password) {
+        KdfParameters parameters = passwordHasher.effective();
+        return metrics.timeKdf(parameters.algorithm(), "encode", () -> passwordHasher.encode(password, parameters));
+    }
+
+    /**
+     * 按当前设置压缩区块内容
+     */
+    private EncryptedBlock compact(EncryptedBlock block) {
+        if (!settingsProvider.current().compressBlocks() || block.body().isCompressed()) {
+            return block;
+        }
+        return block.withBody(toBody(block.content()));
+    }
+
+    private CompressedText toBody(String content) {
+        EncryptSettingsSnapshot settings = settingsProvider.current();
+        if (!settings.compressBlocks()) {
+            return CompressedText.plain(content);
+        }
+        return CompressedText.of(content, settings.compressThreshold(), settings.compressLevel());
+    }
+
+    /**
+     * 同步设置中的内存上限
+     */
+    private void applyMaxWeight() {
+        long maxBytes = settingsProvider.current().blockCacheMaxBytes();
+        if (blocks.getMaxWeight() != maxBytes) {
+            blocks.setMaxWeight(maxBytes);
+            log.info("加密区块内存上限已调整为 {} 字节", maxBytes);
+        }
+    }
+
+    /**
+     * 指纹：blockId 只取内容和密码哈希的前 48 位，这里再比较类型、内容、提示和 TOTP ID 的 SHA-256 指纹
+     * （已存储区块的指纹在登记时计算，比较时无需解压）
+     */
+    private boolean matchesFingerprint(EncryptedBlock block, String type, String content,
+            String hint, String totpId) {
+        return block.fingerprint().equals(EncryptedBlock.fingerprintOf(type, content, hint, totpId));
+    }
+
+    /**
+     * 区块权重：内容（压缩后或 UTF-16）及提示在堆上占用的字节数加固定开销
+     */
+    private static long weigh(EncryptedBlock block) {
+        long hintBytes = block.hint() != null ? 2L * block.hint().length() : 0;
+        return block.body().heapBytes() + hintBytes + BLOCK_OVERHEAD_BYTES;
+    }
+
+    /**
+     * @param hashed 哈希次数
+     * @param reused 复用次数
+     * @param cache  内存缓存统计（条目数、当前权重、命中率、淘汰次数）
+     */
+    public record RegistryStats(long hashed, long reused, WeightedLruCache.Stats cache) {
+
+        /**
+         * 复用率（0~1），尚无渲染时为 0
+         */
+        public double reuseRatio() {
+            long total = hashed + reused;
+            return total == 0 ? 0 : (double) reused / total;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package run.halo.encrypt.processor;
+
+import static org.springframework.data.domain.Sort.Order.desc;
+import static run.halo.app.extension.index.query.QueryFactory.equal;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ListResult;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.PageRequestImpl;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.router.selector.FieldSelector;
+import run.halo.encrypt.extension.EncryptBlock;
+import run.halo.encrypt.processor.EncryptContentProcessor.EncryptedBlock;
+
+/**
+ * 加密区块持久化存储（EncryptBlock Extension）
+ * 渲染路径只把新哈希的区块放入待写队列（同一 blockId 只保留最新一次），
+ * 由后台定时批量写入（写入成功后才移出队列，失败的下次重试）；插件启动时并行预加载最近的区块，避免重启后解锁失败
+ * 文章重新渲染或删除后，清理其名下不再使用的区块
+ *
+ * Extension 的 metadata.name 即 blockId，便于按 ID 直接读取
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EncryptBlockStore {
+
+    // 写入队列刷新间隔
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(2);
+    private static final int WRITE_CONCURRENCY = 4;
+
+    // 启动预热：按创建时间倒序加载的区块数量上限
+    private static final int WARM_UP_LIMIT = 2000;
+    private static final int WARM_UP_PAGE_SIZE = 200;
+    private static final int WARM_UP_CONCURRENCY = 4;
+
+    // 单个区块写入失败的最大次数（每次刷新重试一次）
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+
+    private static final Duration STOP_FLUSH_TIMEOUT = Duration.ofSeconds(5);
+
+    // 清理不再使用的区块时，创建不满此时长的区块保留
+    private static final Duration GC_GRACE = Duration.ofDays(1);
+
+    private final ReactiveExtensionClient client;
+
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    // 文章名 -> 上次清理时保留的区块（避免同一结果重复清理）
+    private final Map<String, Set<String>> retainedBlockIds = new ConcurrentHashMap<>();
+    private volatile Disposable flusher;
+
+    /**
+     * 放入待写队列（不阻塞渲染）
+     */
+    public void enqueue(String postName, EncryptedBlock block) {
+        pendingWrites.put(block.blockId(), new PendingWrite(postName, block));
+    }
+
+    /**
+     * 按 blockId 读取区块（优先读取尚未写入的队列）
+     */
+    public Mono<EncryptedBlock> find(String blockId) {
+        PendingWrite pending = pendingWrites.get(blockId);
+        if (pending != null) {
+            return Mono.just(pending.block());
+        }
+        return client.fetch(EncryptBlock.class, blockId)
+                .filter(block -> block.getSpec() != null)
+                .map(EncryptBlockStore::toBlock)
+                .onErrorResume(e -> {
+                    log.warn("读取加密区块失败 - blockId: {}, error: {}", blockId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 更新已存储区块的密码哈希（仍为旧值时才更新，避免覆盖区块重新登记后的新哈希）
+     * 区块尚在待写队列中时直接替换队列中的记录
+     */
+    public void updatePasswordHash(String blockId, String oldHash, String newHash) {
+        PendingWrite pending = pendingWrites.computeIfPresent(blockId, (id, write) ->
+                Objects.equals(write.block().passwordHash(), oldHash)
+                        ? new PendingWrite(write.postName(), write.block().withPasswordHash(newHash),
+                                write.attempts())
+                        : write);
+        if (pending != null) {
+            return;
+        }
+        Mono.defer(() -> client.fetch(EncryptBlock.class, blockId)
+                        .filter(existing -> existing.getSpec() != null
+                                && Objects.equals(existing.getSpec().getPasswordHash(), oldHash))
+                        .flatMap(existing -> {
+                            existing.getSpec().setPasswordHash(newHash);
+                            return client.update(existing);
+                        }))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance))
+                .subscribe(
+                        updated -> log.debug("已更新区块密码哈希 - blockId: {}", blockId),
+                        e -> log.warn("更新区块密码哈希失败 - blockId: {}, error: {}", blockId, e.getMessage()));
+    }
+
+    /**
+     * 启动后台写入
+     */
+    public synchronized void start() {
+        if (flusher != null && !flusher.isDisposed()) {
+            return;
+        }
+        flusher = Flux.interval(FLUSH_INTERVAL)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    /**
+     * 停止后台写入，并尽量写完剩余队列
+     */
+    public synchronized void stop() {
+        if (flusher != null) {
+            flusher.dispose();
+            flusher = null;
+        }
+        try {
+            flush().block(STOP_FLUSH_TIMEOUT);
+        } catch (Exception e) {
+            log.warn("停止时写入加密区块失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入当前队列中的全部区块
+     * 区块在写入成功后才移出队列（写入期间 {@link #find(String)} 仍能读到），失败的留在队列中下次重试
+     */
+    public Mono<Void> flush() {
+        if (pendingWrites.isEmpty()) {
+            return Mono.empty();
+        }
+        List<PendingWrite> batch = new ArrayList<>(pendingWrites.values());
+        return Flux.fromIterable(batch)
+                .flatMap(this::write, WRITE_CONCURRENCY)
+                .then()
+                .doOnSuccess(v -> log.debug("已写入 {} 个加密区块", batch.size()));
+    }
+
+    /**
+     * 清理文章中已不存在的区块（文章重新渲染后调用）
+     * 只删除该文章名下、不在本次渲染结果中、且创建超过 {@link #GC_GRACE} 的区块，
+     * 新旧版本（如预览与发布版本）交替渲染时不会立即删除另一版本刚登记的区块；
+     * 与上次清理时的区块集合相同时跳过，不重复查询
+     */
+    public void retainPostBlocks(String postName, Set<String> blockIds) {
+        Set<String> retained = Set.copyOf(blockIds);
+        if (retained.equals(retainedBlockIds.put(postName, retained))) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(GC_GRACE);
+        deleteBlocks(listByPost(postName)
+                        .filter(block -> !retained.contains(block.getMetadata().getName()))
+                        .filter(block -> block.getMetadata().getCreationTimestamp() == null
+                                || block.getMetadata().getCreationTimestamp().isBefore(cutoff)),
+                postName);
+    }
+
+    /**
+     * 删除文章名下的全部区块（文章删除后调用），包括尚未写入的队列
+     */
+    public void deletePostBlocks(String postName) {
+        retainedBlockIds.remove(postName);
+        pendingWrites.values().removeIf(write -> postName.equals(write.postName()));
+        deleteBlocks(listByPost(postName), postName);
+    }
+
+    private void deleteBlocks(Flux<EncryptBlock> candidates, String postName) {
+        candidates
+                // 仍在待写队列中的区块刚被重新登记，不删除
+                .filter(block -> !pendingWrites.containsKey(block.getMetadata().getName()))
+                .flatMap(client::delete, WRITE_CONCURRENCY)
+                .count()
+                .subscribe(
+                        count -> {
+                            if (count > 0) {
+                                log.info("已清理文章 {} 中不再使用的 {} 个加密区块", postName, count);
+                            }
+                        },
+                        e -> log.warn("清理加密区块失败 - post: {}, error: {}", postName, e.getMessage()));
+    }
+
+    private Flux<EncryptBlock> listByPost(String postName) {
+        var listOptions = new ListOptions();
+        listOptions.setFieldSelector(FieldSelector.of(equal("spec.postName", postName)));
+        return client.listAll(EncryptBlock.class, listOptions, Sort.unsorted())
+                .filter(block -> block.getMetadata().getDeletionTimestamp() == null);
+    }
+
+    /**
+     * 并行加载最近创建的区块（热点集合）
+     */
+    public Flux<EncryptedBlock> loadHotSet() {
+        var sort = Sort.by(desc("metadata.creationTimestamp"));
+        int pages = (WARM_UP_LIMIT + WARM_UP_PAGE_SIZE - 1) / WARM_UP_PAGE_SIZE;
+        return Flux.range(1, pages)
+                .flatMap(page -> client.listBy(EncryptBlock.class, new ListOptions(),
+                                        PageRequestImpl.of(page, WARM_UP_PAGE_SIZE, sort))
+                                .flatMapIterable(ListResult::getItems)
+                                .onErrorResume(e -> {
+                                    log.warn("预加载加密区块第 {} 页失败: {}", page, e.getMessage());
+                                    return Flux.empty();
+                                }),
+                        WARM_UP_CONCURRENCY)
+                .filter(block -> block.getSpec() != null && block.getMetadata().getDeletionTimestamp() == null)
+                .map(EncryptBlockStore::toBlock);
+    }
+
+    /**
+     * 写入单个区块，成功后移出队列（队列中已被更新的记录保留）；
+     * 失败时记录次数留待下次重试，超过 {@link #MAX_WRITE_ATTEMPTS} 次后放弃
+     */
+    private Mono<Void> write(PendingWrite write) {
+        String blockId = write.block().blockId();
+        return upsert(write)
+                .doOnNext(saved -> pendingWrites.computeIfPresent(blockId,
+                        (id, current) -> current == write ? null : current))
+                .then()
+                .onErrorResume(e -> {
+                    PendingWrite retry = write.failed();
+                    if (retry.attempts() >= MAX_WRITE_ATTEMPTS) {
+                        pendingWrites.computeIfPresent(blockId, (id, current) -> current == write ? null : current);
+                        log.error("写入加密区块失败，已放弃 - blockId: {}, 尝试次数: {}, error: {}", blockId,
+                                retry.attempts(), e.getMessage());
+                    } else {
+                        pendingWrites.computeIfPresent(blockId, (id, current) -> current == write ? retry : current);
+                        log.warn("写入加密区块失败，稍后重试 - blockId: {}, error: {}", blockId, e.getMessage());
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<EncryptBlock> upsert(PendingWrite write) {
+        EncryptedBlock block = write.block();
+        return Mono.defer(() -> client.fetch(EncryptBlock.class, block.blockId())
+                        .flatMap(existing -> {
+                            existing.setSpec(toSpec(write));
+                            return client.update(existing);
+                        })
+                        .switchIfEmpty(Mono.defer(() -> client.create(toExtension(write)))))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance));
+    }
+
+    private static EncryptBlock toExtension(PendingWrite write) {
+        EncryptBlock extension = new EncryptBlock();
+        Metadata metadata = new Metadata();
+        metadata.setName(write.block().blockId());
+        extension.setMetadata(metadata);
+        extension.setSpec(toSpec(write));
+        return extension;
+    }
+
+    private static EncryptBlock.EncryptBlockSpec toSpec(PendingWrite write) {
+        EncryptedBlock block = write.block();
+        EncryptBlock.EncryptBlockSpec spec = new EncryptBlock.EncryptBlockSpec();
+        spec.setPostName(write.postName());
+        spec.setBlockId(block.blockId());
+        spec.setEncryptType(block.type());
+        spec.setPasswordHash(block.passwordHash());
+        spec.setEncryptedContent(block.content());
+        spec.setHint(block.hint());
+        spec.setTotpId(block.totpId());
+        return spec;
+    }
+
+    static EncryptedBlock toBlock(EncryptBlock extension) {
+        var spec = extension.getSpec();
+        return new EncryptedBlock(
+                spec.getBlockId(),
+                spec.getEncryptType(),
+                spec.getPasswordHash(),
+                spec.getEncryptedContent(),
+                spec.getHint() != null ? spec.getHint() : "",
+                spec.getTotpId() != null ? spec.getTotpId() : "");
+    }
+
+    /**
+     * @param attempts 已失败的写入次数
+     */
+    private record PendingWrite(String postName, EncryptedBlock block, int attempts) {
+
+        PendingWrite(String postName, EncryptedBlock block) {
+            this(postName, block, 0);
+        }
+
+        PendingWrite failed() {
+            return new PendingWrite(postName, block, attempts + 1);
+        }
+    }
+}
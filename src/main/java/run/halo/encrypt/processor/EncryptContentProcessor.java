@@ -1,36 +1,37 @@
 package run.halo.encrypt.processor;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import run.halo.app.extension.ConfigMap;
-import run.halo.app.extension.ReactiveExtensionClient;
-import run.halo.app.plugin.ReactiveSettingFetcher;
 import run.halo.app.theme.ReactivePostContentHandler;
-import run.halo.encrypt.model.TotpPassword;
-import run.halo.encrypt.util.TotpUtils;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.token.UnlockState;
+import run.halo.encrypt.util.CompressedText;
+import run.halo.encrypt.util.ContentFingerprint;
+import run.halo.encrypt.util.ExcerptSanitizer;
+import run.halo.encrypt.verify.AttemptThrottle;
+import run.halo.encrypt.verify.LockoutStore;
+import run.halo.encrypt.verify.UnlockAttempt;
+import run.halo.encrypt.verify.UnlockVerifier;
+import run.halo.encrypt.verify.VerifyScheduler;
 
 /**
  * 文章内容处理器（后端验证版 + 安全功能）
  * 解析 [encrypt]...[/encrypt] 标记，替换为安全占位符
  * 支持密码错误锁定和解锁日志
+ * 开启“直接输出已解锁内容”时，读者令牌中已解锁的区块在渲染时直接替换为内容
  * 
  * 注意：此处理器应该最后运行，处理所有 [encrypt] 标签
  * 
@@ -42,62 +43,111 @@ import run.halo.encrypt.util.TotpUtils;
 @Order(Ordered.LOWEST_PRECEDENCE) // 最后运行，处理所有 [encrypt] 标签
 public class EncryptContentProcessor implements ReactivePostContentHandler {
 
-    // 内存存储加密内容（生产环境应使用数据库）
-    private static final Map<String, EncryptedBlock> ENCRYPTED_BLOCKS = new ConcurrentHashMap<>();
+    // 单次批量解锁最多处理的区块数
+    public static final int MAX_BATCH_BLOCKS = 32;
 
-    // 失败尝试计数器（IP/Session -> blockId -> 失败次数和时间）
-    private static final Map<String, FailedAttemptInfo> FAILED_ATTEMPTS = new ConcurrentHashMap<>();
+    // 渲染时并行登记的区块数
+    private static final int REGISTER_CONCURRENCY = 4;
 
-    private static final PasswordEncoder PASSWORD_ENCODER = new BCryptPasswordEncoder();
+    // 直接输出的已解锁内容容器（与前端解锁后的结构一致）
+    private static final String REVEALED_OPEN = "<div class=\"encrypt-content-revealed\">";
+    private static final String REVEALED_CLOSE = "</div>";
 
-    // 安全配置（默认值）
-    private static int maxFailAttempts = 5;
-    private static int lockDurationMinutes = 15;
-    private static boolean enableUnlockLog = true;
-
-    // TOTP 配置
-    private static String masterKey = "";
-    private static List<TotpPassword> totpPasswords = new ArrayList<>();
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
-    private static final String CONFIG_MAP_NAME = "plugin-encrypt-configMap";
-    private static final String TOTP_PASSWORDS_KEY = "totpPasswords";
-
-    // 区块 TOTP 配置缓存
-    private static final String BLOCK_TOTP_CONFIG_MAP = "encrypt-block-totp";
-    private static final Map<String, BlockTotpConfig> BLOCK_TOTP_CACHE = new ConcurrentHashMap<>();
-
-    private final ReactiveSettingFetcher settingFetcher;
-    private final ReactiveExtensionClient extensionClient;
-
-    // 匹配 [encrypt type="password" password="xxx"]内容[/encrypt]
-    private static final Pattern ENCRYPT_PATTERN = Pattern.compile(
-            "\\[encrypt\\s+([^\\]]+)\\](.*?)\\[/encrypt\\]",
-            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-
-    // 匹配属性（支持连字符，如 totp-id）
-    private static final Pattern ATTR_PATTERN = Pattern.compile(
-            "([\\w-]+)\\s*=\\s*[\"']([^\"']*)[\"']");
+    private final EncryptSettingsProvider settingsProvider;
+    private final EncryptBlockRegistry blockRegistry;
+    private final ProcessedContentCache contentCache;
+    private final PlaceholderRenderer placeholderRenderer;
+    private final EncryptMetrics metrics;
+    private final List<UnlockVerifier> verifiers;
+    private final VerifyScheduler verifyScheduler;
+    private final LockoutStore lockoutStore;
+    private final AttemptThrottle attemptThrottle;
 
     @Override
     public Mono<PostContentContext> handle(PostContentContext context) {
+        return metrics.timeRender("content", () -> process(context));
+    }
+
+    private Mono<PostContentContext> process(PostContentContext context) {
         String content = context.getContent();
 
-        if (content == null || !content.contains("[encrypt")) {
+        if (content == null) {
+            return Mono.just(context);
+        }
+
+        // 内容来自处理缓存，已是最终结果
+        if (contentCache.isCachedOutput(context)) {
+            return revealUnlocked(context, contentCache.placeholdersOf(context));
+        }
+
+        long generation = contentCache.currentGeneration();
+        if (!content.contains("[encrypt")) {
+            blockRegistry.retainPostBlocks(postNameOf(context), Set.of());
+            contentCache.put(context, generation, false, List.of());
             return Mono.just(context);
         }
 
-        // 加载安全配置和区块 TOTP 缓存
-        return loadSecuritySettings()
-                .then(loadBlockTotpCache())
+        // 首次渲染时确保配置快照已加载（之后由 ConfigMap 变更事件刷新，不再 I/O）
+        return settingsProvider.ensureLoaded()
                 .then(Mono.fromCallable(() -> {
-                    String processedContent = processEncryptBlocks(content);
+                    List<ProcessedContentCache.Placeholder> placeholders = new ArrayList<>();
+                    List<BlockSource> sources = new ArrayList<>();
+                    String processedContent = processEncryptBlocks(postNameOf(context), content, placeholders,
+                            sources);
                     context.setContent(processedContent);
 
                     // 服务端清理摘要，防止加密内容泄露
                     cleanExcerpt(context);
+                    return new RenderedBlocks(placeholders, sources);
+                }))
+                // 占位符不依赖登记结果，但须在缓存渲染结果前登记完所有区块，否则解锁时找不到区块
+                .flatMap(rendered -> Flux.fromIterable(rendered.sources())
+                        .flatMap(this::registerBlock, REGISTER_CONCURRENCY)
+                        .then(Mono.fromSupplier(() -> {
+                            blockRegistry.retainPostBlocks(postNameOf(context), rendered.sources().stream()
+                                    .map(BlockSource::blockId)
+                                    .collect(Collectors.toSet()));
+                            // 含过期时间的区块跨天后结果会变化
+                            contentCache.put(context, generation, content.contains("expires="),
+                                    rendered.placeholders());
+                            return rendered.placeholders();
+                        })))
+                .flatMap(placeholders -> revealUnlocked(context, placeholders));
+    }
 
-                    return context;
-                }));
+    /**
+     * 直接输出读者已解锁的区块
+     * 仅在开启 inlineReveal 且请求带有有效解锁令牌时生效（由 UnlockStateWebFilter 放入 Reactor Context）；
+     * 缓存中保存的始终是占位符版本，替换只作用于本次请求的上下文
+     */
+    private Mono<PostContentContext> revealUnlocked(PostContentContext context,
+            List<ProcessedContentCache.Placeholder> placeholders) {
+        if (placeholders.isEmpty() || !settingsProvider.current().inlineReveal()) {
+            return Mono.just(context);
+        }
+        return Mono.deferContextual(contextView -> {
+            UnlockState state = contextView.getOrDefault(UnlockState.class, null);
+            if (state == null) {
+                return Mono.just(context);
+            }
+            return Flux.fromIterable(placeholders)
+                    .filter(placeholder -> state.isUnlocked(placeholder.blockId()))
+                    .concatMap(placeholder -> blockRegistry.find(placeholder.blockId())
+                            .map(block -> Map.entry(placeholder.html(), block.content())))
+                    .collectList()
+                    .map(reveals -> {
+                        if (reveals.isEmpty()) {
+                            return context;
+                        }
+                        String html = context.getContent();
+                        for (var reveal : reveals) {
+                            html = html.replace(reveal.getKey(), REVEALED_OPEN + reveal.getValue() + REVEALED_CLOSE);
+                        }
+                        context.setContent(html);
+                        state.markRevealed();
+                        return context;
+                    });
+        });
     }
 
     /**
@@ -125,33 +175,12 @@ public class EncryptContentProcessor implements ReactivePostContentHandler {
             }
 
             // 检查是否包含加密标签
-            if (!excerptRaw.contains("[encrypt") && !excerptRaw.contains("[/encrypt]")) {
+            if (!ExcerptSanitizer.containsEncryptTag(excerptRaw)) {
                 return;
             }
 
-            // 清理加密标签
-            String cleaned = excerptRaw;
-
-            // 替换完整的 [encrypt]...[/encrypt] 块
-            cleaned = cleaned.replaceAll(
-                    "\\[encrypt[^\\]]*\\][\\s\\S]*?\\[/encrypt\\]",
-                    "🔒 [加密内容]");
-
-            // 替换被截断的开始标签
-            cleaned = cleaned.replaceAll(
-                    "\\[encrypt[^\\]]*\\]",
-                    "🔒 [加密内容]");
-
-            // 清理残留的结束标签
-            cleaned = cleaned.replaceAll("\\[/encrypt\\]", "");
-
-            // 清理密码属性（以防万一）
-            cleaned = cleaned.replaceAll(
-                    "password\\s*=\\s*[\"'][^\"']*[\"']",
-                    "");
-
-            // 设置清理后的摘要
-            excerpt.setRaw(cleaned);
+            // 清理加密区块、残留标签和密码属性
+            excerpt.setRaw(ExcerptSanitizer.sanitize(excerptRaw));
 
             log.debug("已清理文章摘要中的加密标签: {}", post.getMetadata().getName());
         } catch (Exception e) {
@@ -159,157 +188,89 @@ public class EncryptContentProcessor implements ReactivePostContentHandler {
         }
     }
 
-    /**
-     * 加载安全配置
-     */
-    private Mono<Void> loadSecuritySettings() {
-        return settingFetcher.get("security")
-                .doOnNext(setting -> {
-                    if (setting != null) {
-                        maxFailAttempts = setting.get("maxFailAttempts").asInt(5);
-                        lockDurationMinutes = setting.get("lockDuration").asInt(15);
-                        enableUnlockLog = setting.get("enableUnlockLog").asBoolean(true);
-                    }
-                })
-                .then(settingFetcher.get("totp"))
-                .doOnNext(totpSetting -> {
-                    if (totpSetting != null) {
-                        masterKey = totpSetting.get("masterKey").asText("");
-                    }
-                })
-                .then(loadTotpPasswords())
-                .then();
+    private String processEncryptBlocks(String postName, String content,
+            List<ProcessedContentCache.Placeholder> placeholders, List<BlockSource> sources) {
+        // 单遍扫描解析 [encrypt ...]内容[/encrypt]，属性在同一遍中解析
+        EncryptShortcodeTokenizer tokenizer = new EncryptShortcodeTokenizer(content);
+        int[] blocks = new int[1];
+        String result = tokenizer.render(shortcode -> {
+            blocks[0]++;
+            return renderBlock(postName, shortcode, placeholders, sources);
+        });
+        metrics.recordBlocksPerPost(blocks[0]);
+
+        for (EncryptShortcodeTokenizer.Problem problem : tokenizer.getProblems()) {
+            log.warn("加密标签格式错误（第 {} 行，第 {} 列）: {}",
+                    problem.line(), problem.column(), problem.message());
+        }
+
+        if (log.isDebugEnabled()) {
+            var stats = blockRegistry.stats();
+            log.debug("加密区块注册表 - 哈希: {}, 复用: {}, 复用率: {}", stats.hashed(), stats.reused(),
+                    String.format("%.2f", stats.reuseRatio()));
+        }
+
+        return result;
     }
 
     /**
-     * 从 ConfigMap 加载 TOTP 密码列表
+     * 登记加密区块（内存和持久化存储都未命中时才哈希密码，哈希不在渲染线程上执行）
      */
-    private Mono<Void> loadTotpPasswords() {
-        return extensionClient.get(ConfigMap.class, CONFIG_MAP_NAME)
-                .doOnNext(configMap -> {
-                    try {
-                        String json = configMap.getData().getOrDefault(TOTP_PASSWORDS_KEY, "[]");
-                        totpPasswords = OBJECT_MAPPER.readValue(json,
-                                new TypeReference<List<TotpPassword>>() {
-                                });
-                        log.debug("加载了 {} 个 TOTP 密码", totpPasswords.size());
-                    } catch (Exception e) {
-                        log.warn("解析 TOTP 密码列表失败: {}", e.getMessage());
-                        totpPasswords = new ArrayList<>();
-                    }
-                })
-                .onErrorResume(e -> {
-                    log.debug("ConfigMap 不存在或加载失败");
-                    totpPasswords = new ArrayList<>();
-                    return Mono.empty();
-                })
-                .then();
+    private Mono<EncryptedBlock> registerBlock(BlockSource source) {
+        return blockRegistry.resolve(source.postName(), source.blockId(), source.type(), source.password(),
+                        source.content(), source.hint(), source.totpId())
+                .doOnNext(block -> log.debug("登记加密区块 - blockId: {}, type: {}, totpId: '{}', hasTotpId: {}",
+                        block.blockId(), block.type(), block.totpId(),
+                        block.totpId() != null && !block.totpId().isEmpty()));
     }
 
     /**
-     * 从 ConfigMap 加载区块 TOTP 配置到缓存
+     * 将单个加密区块渲染为占位符（已过期的区块直接输出内容）
      */
-    private Mono<Void> loadBlockTotpCache() {
-        return extensionClient.fetch(ConfigMap.class, BLOCK_TOTP_CONFIG_MAP)
-                .doOnNext(configMap -> {
-                    try {
-                        Map<String, String> data = configMap.getData();
-                        if (data == null) {
-                            BLOCK_TOTP_CACHE.clear();
-                            return;
-                        }
-                        String json = data.get("blocks");
-                        if (json == null || json.isEmpty()) {
-                            BLOCK_TOTP_CACHE.clear();
-                            return;
-                        }
-                        Map<String, BlockTotpConfig> blocks = OBJECT_MAPPER.readValue(json,
-                                new TypeReference<Map<String, BlockTotpConfig>>() {
-                                });
-                        BLOCK_TOTP_CACHE.clear();
-                        BLOCK_TOTP_CACHE.putAll(blocks);
-                        log.debug("加载了 {} 个区块 TOTP 配置", blocks.size());
-                    } catch (Exception e) {
-                        log.warn("解析区块 TOTP 配置失败: {}", e.getMessage());
-                        BLOCK_TOTP_CACHE.clear();
-                    }
-                })
-                .onErrorResume(e -> {
-                    log.debug("区块 TOTP ConfigMap 不存在或加载失败");
-                    BLOCK_TOTP_CACHE.clear();
-                    return Mono.empty();
-                })
-                .then();
-    }
-
-    private String processEncryptBlocks(String content) {
-        Matcher matcher = ENCRYPT_PATTERN.matcher(content);
-        StringBuffer sb = new StringBuffer();
-
-        while (matcher.find()) {
-            String attributes = matcher.group(1);
-            String encryptedContent = matcher.group(2).trim();
-
-            // 解析属性
-            String type = extractAttribute(attributes, "type", "password");
-            String hint = extractAttribute(attributes, "hint", "");
-            String hintType = extractAttribute(attributes, "hint-type", "text");
-            String password = extractAttribute(attributes, "password", "");
-            String expires = extractAttribute(attributes, "expires", "");
-            String totpId = extractAttribute(attributes, "totp-id", "");
-
-            log.info("解析加密区块属性 - blockId 将生成, totpId: '{}', attributes: {}", totpId, attributes);
-
-            // 检查是否已过期
-            if (!expires.isEmpty()) {
-                try {
-                    LocalDate expiresDate = LocalDate.parse(expires);
-                    if (LocalDate.now().isAfter(expiresDate)) {
-                        // 已过期，直接显示内容，不加密
-                        log.info("加密内容已过期，自动公开 - expires: {}", expires);
-                        matcher.appendReplacement(sb, Matcher.quoteReplacement(encryptedContent));
-                        continue;
-                    }
-                } catch (Exception e) {
-                    log.warn("解析过期日期失败: {}", expires);
+    private String renderBlock(String postName, EncryptShortcodeTokenizer.Shortcode shortcode,
+            List<ProcessedContentCache.Placeholder> placeholders, List<BlockSource> sources) {
+        String encryptedContent = shortcode.body();
+
+        // 解析属性
+        String type = shortcode.attribute("type", "password");
+        String hint = shortcode.attribute("hint", "");
+        String hintType = shortcode.attribute("hint-type", "text");
+        String password = shortcode.attribute("password", "");
+        String expires = shortcode.attribute("expires", "");
+        String totpId = shortcode.attribute("totp-id", "");
+
+        log.debug("解析加密区块属性 - 位置: {}:{}, type: {}, totpId: '{}'",
+                shortcode.line(), shortcode.column(), type, totpId);
+
+        // 检查是否已过期
+        if (!expires.isEmpty()) {
+            try {
+                LocalDate expiresDate = LocalDate.parse(expires);
+                if (LocalDate.now().isAfter(expiresDate)) {
+                    // 已过期，直接显示内容，不加密
+                    log.info("加密内容已过期，自动公开 - expires: {}", expires);
+                    return encryptedContent;
                 }
+            } catch (Exception e) {
+                log.warn("解析过期日期失败: {}", expires);
             }
+        }
 
-            // 生成确定性的 blockId（基于内容哈希，刷新后保持一致）
-            String blockId = generateDeterministicBlockId(encryptedContent, password);
-
-            // 存储加密内容到内存（密码用 BCrypt 哈希，空密码存 null）
-            String passwordHash = password.isEmpty() ? null : PASSWORD_ENCODER.encode(password);
-            EncryptedBlock block = new EncryptedBlock(
-                    blockId,
-                    type,
-                    passwordHash,
-                    encryptedContent,
-                    hint,
-                    totpId);
-
-            log.info("存储加密区块 - blockId: {}, type: {}, totpId: '{}', hasTotpId: {}",
-                    blockId, type, block.totpId, (block.totpId != null && !block.totpId.isEmpty()));
-
-            ENCRYPTED_BLOCKS.put(blockId, block);
+        // 生成确定性的 blockId（基于内容哈希，刷新后保持一致）
+        String blockId = generateDeterministicBlockId(encryptedContent, password);
 
-            // 生成占位符 HTML（不包含加密内容！）
-            String placeholder = generatePlaceholder(blockId, type, hint, hintType);
-            matcher.appendReplacement(sb, Matcher.quoteReplacement(placeholder));
-        }
-        matcher.appendTail(sb);
+        // 待登记的加密区块（渲染完成后统一登记，仅首次出现或指纹变化时才进行密码哈希）
+        sources.add(new BlockSource(postName, blockId, type, password, encryptedContent, hint, totpId));
 
-        return sb.toString();
+        // 生成占位符 HTML（不包含加密内容！）
+        String placeholder = placeholderRenderer.render(blockId, type, hint, hintType);
+        placeholders.add(new ProcessedContentCache.Placeholder(blockId, placeholder));
+        return placeholder;
     }
 
-    private String extractAttribute(String attributes, String name, String defaultValue) {
-        Matcher attrMatcher = ATTR_PATTERN.matcher(attributes);
-        while (attrMatcher.find()) {
-            if (name.equalsIgnoreCase(attrMatcher.group(1))) {
-                return attrMatcher.group(2);
-            }
-        }
-        return defaultValue;
+    private static String postNameOf(PostContentContext context) {
+        var post = context.getPost();
+        return post != null && post.getMetadata() != null ? post.getMetadata().getName() : null;
     }
 
     /**
@@ -333,233 +294,288 @@ public class EncryptContentProcessor implements ReactivePostContentHandler {
         }
     }
 
-    private String generatePlaceholder(String blockId, String type, String hint, String hintType) {
-        String typeLabel = "password".equals(type) ? "密码保护" : "付费内容";
-        String hintHtml = generateHintHtml(hint, hintType);
-
-        // 注意：这里不输出 data-content，内容只能通过 API 获取
-        return String.format(
-                """
-                        <div class="encrypt-block" data-block-id="%s" data-type="%s">
-                            <div class="encrypt-lock-icon">
-                                <svg viewBox="0 0 24 24" width="48" height="48">
-                                    <path fill="currentColor" d="M12 17a2 2 0 0 0 2-2a2 2 0 0 0-2-2a2 2 0 0 0-2 2a2 2 0 0 0 2 2m6-9a2 2 0 0 1 2 2v10a2 2 0 0 1-2 2H6a2 2 0 0 1-2-2V10a2 2 0 0 1 2-2h1V6a5 5 0 0 1 5-5a5 5 0 0 1 5 5v2h1m-6-5a3 3 0 0 0-3 3v2h6V6a3 3 0 0 0-3-3z"/>
-                                </svg>
-                            </div>
-                            <div class="encrypt-info">
-                                <span class="encrypt-type-label">%s</span>
-                                <p class="encrypt-desc">此内容已加密，请输入密码解锁</p>
-                                %s
-                            </div>
-                            <div class="encrypt-unlock-form">
-                                <input type="password" class="encrypt-password-input" placeholder="请输入密码" />
-                                <button class="encrypt-unlock-btn" type="button">解锁</button>
-                            </div>
-                            <p class="encrypt-error-msg" style="display: none;"></p>
-                        </div>
-                        """,
-                escapeHtml(blockId), escapeHtml(type), typeLabel, hintHtml);
-    }
-
     /**
-     * 根据提示类型生成 HTML
-     * 支持: text（默认，转义）、html（原样输出）、image（图片标签）
+     * 验证密码并获取内容（供 API 调用）
+     * 
+     * @param blockId  区块ID
+     * @param password 用户输入的密码
+     * @param clientIp 客户端IP（用于锁定）
      */
-    private String generateHintHtml(String hint, String hintType) {
-        if (hint == null || hint.isEmpty()) {
-            return "";
+    public Mono<VerifyResult> verifyAndGetContent(String blockId, String password, String clientIp) {
+        EncryptSettingsSnapshot settings = settingsProvider.current();
+
+        VerifyResult rejected = rejectIfLockedOrThrottled(blockId, clientIp);
+        if (rejected != null) {
+            return Mono.just(rejected);
         }
 
-        return switch (hintType.toLowerCase()) {
-            case "html" ->
-                // HTML 类型：直接输出（允许链接等）
-                "<div class=\"encrypt-hint encrypt-hint-html\">" + hint + "</div>";
-            case "image" ->
-                // 图片类型：生成 img 标签
-                "<div class=\"encrypt-hint encrypt-hint-image\"><img src=\"" + escapeHtml(hint)
-                        + "\" alt=\"提示图片\" /></div>";
-            default ->
-                // 文本类型：转义 HTML
-                "<p class=\"encrypt-hint\">" + escapeHtml(hint) + "</p>";
-        };
+        // 检查区块是否存在（内存未命中时从存储重新读取）
+        return blockRegistry.find(blockId)
+                .flatMap(block -> {
+                    UnlockAttempt attempt = UnlockAttempt.of(block, password, settings);
+                    return runVerifiers(attempt).map(match -> complete(attempt, match, clientIp));
+                })
+                .switchIfEmpty(Mono.fromSupplier(this::notFound));
     }
 
-    private String escapeHtml(String text) {
-        if (text == null)
-            return "";
-        return text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&#39;");
+    /**
+     * 用同一密码批量解锁多个区块（供 API 调用）
+     * 密码哈希和动态密码配置都相同的区块归为一组，每组只校验一次，结果应用到组内所有区块；
+     * 锁定检查和解锁日志仍按区块分别记录
+     *
+     * 第一个区块是读者输入密码的目标区块，只有它的验证失败计入失败次数和限流；
+     * 其他区块只是顺带尝试，未通过时静默返回未解锁，不消耗这些区块的尝试次数
+     *
+     * @param blockIds 区块ID，第一个为目标区块（去重后最多处理 {@link #MAX_BATCH_BLOCKS} 个）
+     * @return 区块ID -> 验证结果，顺序与请求一致
+     */
+    public Mono<Map<String, VerifyResult>> verifyBatch(List<String> blockIds, String password, String clientIp) {
+        EncryptSettingsSnapshot settings = settingsProvider.current();
+
+        String target = blockIds.stream().filter(Objects::nonNull).findFirst().orElse(null);
+        Map<String, VerifyResult> results = new LinkedHashMap<>();
+        List<String> candidates = new ArrayList<>();
+        blockIds.stream().filter(Objects::nonNull).distinct().limit(MAX_BATCH_BLOCKS).forEach(blockId -> {
+            VerifyResult rejected = rejectIfLockedOrThrottled(blockId, clientIp);
+            results.put(blockId, rejected);
+            if (rejected == null) {
+                candidates.add(blockId);
+            }
+        });
+
+        return Flux.fromIterable(candidates)
+                .concatMap(blockRegistry::find)
+                .collect(Collectors.groupingBy(
+                        block -> new VerifyGroup(block.passwordHash(), block.totpId()),
+                        LinkedHashMap::new, Collectors.toList()))
+                .flatMapMany(groups -> Flux.fromIterable(groups.values()))
+                .flatMap(group -> runVerifiers(UnlockAttempt.of(group.get(0), password, settings))
+                        .map(match -> group.stream()
+                                .map(block -> Map.entry(block.blockId(),
+                                        match.verifier() != null || block.blockId().equals(target)
+                                                ? complete(UnlockAttempt.of(block, password, settings), match, clientIp)
+                                                : notUnlocked()))
+                                .toList()))
+                .flatMapIterable(list -> list)
+                .collectList()
+                .map(verified -> {
+                    verified.forEach(entry -> results.put(entry.getKey(), entry.getValue()));
+                    results.replaceAll((blockId, result) -> result != null ? result : notFound());
+                    return results;
+                });
     }
 
     /**
-     * 验证密码并获取内容（供 API 调用）
-     * 
-     * @param blockId  区块ID
-     * @param password 用户输入的密码
-     * @param clientIp 客户端IP（用于锁定）
+     * 锁定或限流中的区块直接返回拒绝结果，否则返回 null
      */
-    public static VerifyResult verifyAndGetContent(String blockId, String password, String clientIp) {
+    private VerifyResult rejectIfLockedOrThrottled(String blockId, String clientIp) {
         // 检查是否被锁定
-        String lockKey = clientIp + ":" + blockId;
-        FailedAttemptInfo attemptInfo = FAILED_ATTEMPTS.get(lockKey);
-
-        if (attemptInfo != null && attemptInfo.isLocked()) {
-            long remainingMinutes = attemptInfo.getRemainingLockMinutes();
+        long remainingLockMillis = lockoutStore.remainingLockMillis(clientIp, blockId);
+        if (remainingLockMillis > 0) {
+            long remainingMinutes = Math.max(1, (remainingLockMillis + 59_999) / 60_000); // 向上取整
             String message = String.format("密码错误次数过多，请在 %d 分钟后重试", remainingMinutes);
             log.warn("解锁被锁定 - blockId: {}, IP: {}, 剩余锁定时间: {} 分钟", blockId, clientIp, remainingMinutes);
+            metrics.recordUnlock(EncryptMetrics.METHOD_NONE, EncryptMetrics.OUTCOME_LOCKED);
             return new VerifyResult(false, message, null, true, (int) remainingMinutes);
         }
 
-        // 检查区块是否存在
-        EncryptedBlock block = ENCRYPTED_BLOCKS.get(blockId);
-        if (block == null) {
-            return new VerifyResult(false, "加密区块不存在", null, false, 0);
+        // 按 IP、网段和区块的近似失败计数限流（分布式撞库时精确锁定无法生效）
+        String throttled = attemptThrottle.check(clientIp, blockId);
+        if (throttled != null) {
+            long retryMinutes = Math.max(1, (attemptThrottle.millisUntilDecay() + 59_999) / 60_000);
+            log.warn("解锁被限流 - blockId: {}, IP: {}, 维度: {}", blockId, clientIp, throttled);
+            metrics.recordUnlock(EncryptMetrics.METHOD_NONE, EncryptMetrics.OUTCOME_THROTTLED);
+            return new VerifyResult(false,
+                    String.format("尝试过于频繁，请在 %d 分钟后重试", retryMinutes), null, true, (int) retryMinutes);
         }
+        return null;
+    }
+
+    /**
+     * 顺带尝试的区块未通过验证（不记录失败）
+     */
+    private static VerifyResult notUnlocked() {
+        return new VerifyResult(false, "密码不匹配", null, false, 0);
+    }
 
-        // 验证密码（优先级：TOTP > 万能密钥 > 区块密码）
-        boolean passwordValid = false;
-        String unlockMethod = "";
-
-        // 1. 尝试区块级 TOTP（如果区块有 totp-id）
-        if (password.matches("\\d{6}") && block.totpId != null && !block.totpId.isEmpty()) {
-            log.info("尝试区块 TOTP 验证 - blockId: {}, totpId: {}, password: {}", blockId, block.totpId, password);
-            if (verifyBlockTotp(block.totpId, password)) {
-                passwordValid = true;
-                unlockMethod = "区块动态密码";
-                log.info("区块 TOTP 验证成功！");
+    private VerifyResult notFound() {
+        metrics.recordUnlock(EncryptMetrics.METHOD_NONE, EncryptMetrics.OUTCOME_NOT_FOUND);
+        return new VerifyResult(false, "加密区块不存在", null, false, 0);
+    }
+
+    /**
+     * 依次尝试各验证方式
+     * 非阻塞的验证方式（万能密钥、动态密码）在当前线程完成；
+     * 只有需要密码哈希校验的方式才提交到校验线程池，避免阻塞事件循环
+     */
+    private Mono<Match> runVerifiers(UnlockAttempt attempt) {
+        // 按成本从低到高依次尝试各验证方式，预检查不通过的方式直接跳过
+        List<UnlockVerifier> blocking = new ArrayList<>(1);
+        for (UnlockVerifier verifier : verifiers) {
+            if (!verifier.precheck(attempt)) {
+                metrics.recordVerifier(verifier.method(), EncryptMetrics.VERIFIER_SKIP);
+            } else if (verifier.blocking(attempt)) {
+                blocking.add(verifier);
             } else {
-                log.warn("区块 TOTP 验证失败 - totpId: {}, cacheSize: {}", block.totpId, BLOCK_TOTP_CACHE.size());
+                String label = tryVerifier(verifier, attempt);
+                if (label != null) {
+                    return Mono.just(new Match(verifier, label));
+                }
             }
         }
 
-        // 2. 尝试全局 TOTP 动态密码（6位纯数字）- 遍历所有启用的密码
-        if (!passwordValid && password.matches("\\d{6}") && !totpPasswords.isEmpty()) {
-            for (TotpPassword totp : totpPasswords) {
-                if (!totp.isEnabled())
-                    continue;
-                try {
-                    if (TotpUtils.verifyCodeByCreationTime(
-                            totp.getSecret(), password,
-                            totp.getCreatedAt(), totp.getDurationDays())) {
-                        passwordValid = true;
-                        unlockMethod = "全局动态密码 (" + totp.getName() + ")";
-                        break;
-                    }
-                } catch (Exception e) {
-                    log.warn("TOTP 验证异常: {}", e.getMessage());
+        if (blocking.isEmpty()) {
+            return Mono.just(Match.NONE);
+        }
+        return verifyScheduler.submit(() -> {
+            for (UnlockVerifier verifier : blocking) {
+                String label = tryVerifier(verifier, attempt);
+                if (label != null) {
+                    return new Match(verifier, label);
                 }
             }
-        }
+            return Match.NONE;
+        });
+    }
 
-        // 3. 尝试万能密钥
-        if (!passwordValid && !masterKey.isEmpty() && masterKey.equals(password)) {
-            passwordValid = true;
-            unlockMethod = "万能密钥";
-        }
+    /**
+     * 执行单个验证方式并记录命中情况
+     *
+     * @return 通过时返回解锁方式描述，否则返回 null
+     */
+    private String tryVerifier(UnlockVerifier verifier, UnlockAttempt attempt) {
+        String label = verifier.verify(attempt);
+        metrics.recordVerifier(verifier.method(),
+                label != null ? EncryptMetrics.VERIFIER_HIT : EncryptMetrics.VERIFIER_MISS);
+        return label;
+    }
 
-        // 4. 尝试区块固定密码（需要区块有设置密码，且用户输入非空）
-        if (!passwordValid && !password.isEmpty() && block.passwordHash != null
-                && !block.passwordHash.isEmpty() && PASSWORD_ENCODER.matches(password, block.passwordHash)) {
-            passwordValid = true;
-            unlockMethod = "区块密码";
-        }
+    /**
+     * 根据验证结果更新失败记录并生成响应
+     */
+    private VerifyResult complete(UnlockAttempt attempt, Match match, String clientIp) {
+        EncryptedBlock block = attempt.block();
+        EncryptSettingsSnapshot settings = attempt.settings();
+        String blockId = block.blockId();
+        boolean passwordValid = match.verifier() != null;
 
         if (!passwordValid) {
             // 记录失败尝试
-            recordFailedAttempt(lockKey);
+            attemptThrottle.recordFailure(clientIp, blockId);
+            LockoutStore.Failure failure = lockoutStore.recordFailure(clientIp, blockId,
+                    settings.maxFailAttempts(), settings.lockDurationMinutes() * 60_000L);
+            if (failure.locked()) {
+                metrics.recordLockout();
+            }
+            metrics.recordUnlock(EncryptMetrics.METHOD_NONE, EncryptMetrics.OUTCOME_FAILURE);
 
-            int remainingAttempts = getRemainingAttempts(lockKey);
+            int remainingAttempts = failure.remainingAttempts(settings.maxFailAttempts());
             String message;
             if (remainingAttempts > 0) {
                 message = String.format("密码错误，还剩 %d 次尝试机会", remainingAttempts);
             } else {
-                message = String.format("密码错误次数过多，已锁定 %d 分钟", lockDurationMinutes);
+                message = String.format("密码错误次数过多，已锁定 %d 分钟", settings.lockDurationMinutes());
             }
 
-            if (enableUnlockLog) {
+            if (settings.enableUnlockLog()) {
                 log.info("解锁失败 - blockId: {}, IP: {}, 剩余尝试次数: {}", blockId, clientIp, remainingAttempts);
             }
 
             return new VerifyResult(false, message, null, remainingAttempts <= 0,
-                    remainingAttempts <= 0 ? lockDurationMinutes : 0);
+                    remainingAttempts <= 0 ? settings.lockDurationMinutes() : 0);
         }
 
         // 密码正确，清除失败记录
-        FAILED_ATTEMPTS.remove(lockKey);
+        lockoutStore.clear(clientIp, blockId);
+        metrics.recordUnlock(match.verifier().method(), EncryptMetrics.OUTCOME_SUCCESS);
 
-        if (enableUnlockLog) {
-            log.info("解锁成功 - blockId: {}, IP: {}, 方式: {}", blockId, clientIp, unlockMethod);
+        if (settings.enableUnlockLog()) {
+            log.info("解锁成功 - blockId: {}, IP: {}, 方式: {}", blockId, clientIp, match.label());
         }
 
-        return new VerifyResult(true, "解锁成功", block.content, false, 0);
+        return new VerifyResult(true, "解锁成功", block.content(), false, 0);
     }
 
     /**
      * 兼容老接口（不带 IP 参数）
      */
-    public static VerifyResult verifyAndGetContent(String blockId, String password) {
+    public Mono<VerifyResult> verifyAndGetContent(String blockId, String password) {
         return verifyAndGetContent(blockId, password, "unknown");
     }
 
-    /**
-     * 记录失败尝试
-     */
-    private static void recordFailedAttempt(String lockKey) {
-        FailedAttemptInfo attemptInfo = FAILED_ATTEMPTS.computeIfAbsent(
-                lockKey, k -> new FailedAttemptInfo());
-        attemptInfo.increment();
-
-        // 如果达到最大次数，设置锁定时间
-        if (attemptInfo.failCount >= maxFailAttempts) {
-            attemptInfo.lockUntil = Instant.now().plusSeconds(lockDurationMinutes * 60L);
-        }
-    }
-
-    /**
-     * 获取剩余尝试次数
-     */
-    private static int getRemainingAttempts(String lockKey) {
-        FailedAttemptInfo attemptInfo = FAILED_ATTEMPTS.get(lockKey);
-        if (attemptInfo == null) {
-            return maxFailAttempts;
-        }
-        return Math.max(0, maxFailAttempts - attemptInfo.failCount);
-    }
-
     /**
      * 检查区块是否存在
      */
-    public static boolean blockExists(String blockId) {
-        return ENCRYPTED_BLOCKS.containsKey(blockId);
+    public Mono<Boolean> blockExists(String blockId) {
+        return blockRegistry.find(blockId).hasElement();
     }
 
     /**
      * 通过 blockId 直接获取内容（用于会话记忆，已验证过的请求）
      * 注意：此方法不验证密码，调用方需确保用户已验证
      */
-    public static String getContentByBlockId(String blockId) {
-        EncryptedBlock block = ENCRYPTED_BLOCKS.get(blockId);
-        return block != null ? block.content : null;
+    public Mono<String> getContentByBlockId(String blockId) {
+        return blockRegistry.find(blockId).map(EncryptedBlock::content);
     }
 
     /**
      * 获取当前配置
      */
-    public static SecurityConfig getSecurityConfig() {
-        return new SecurityConfig(maxFailAttempts, lockDurationMinutes, enableUnlockLog);
+    public SecurityConfig getSecurityConfig() {
+        EncryptSettingsSnapshot settings = settingsProvider.current();
+        return new SecurityConfig(settings.maxFailAttempts(), settings.lockDurationMinutes(),
+                settings.enableUnlockLog());
     }
 
     // 内部数据类
+    /**
+     * 加密区块
+     *
+     * @param body        区块内容（可能为压缩存储）
+     * @param fingerprint 类型、原始内容、提示和 TOTP ID 的 SHA-256 指纹，判断区块是否变化时无需解压
+     */
     public record EncryptedBlock(
             String blockId,
             String type,
             String passwordHash,
-            String content,
+            CompressedText body,
             String hint,
-            String totpId) {
+            String totpId,
+            ContentFingerprint fingerprint) {
+
+        public EncryptedBlock(String blockId, String type, String passwordHash, String content,
+                String hint, String totpId) {
+            this(blockId, type, passwordHash, CompressedText.plain(content != null ? content : ""),
+                    hint, totpId, fingerprintOf(type, content != null ? content : "", hint, totpId));
+        }
+
+        /**
+         * 区块指纹
+         */
+        public static ContentFingerprint fingerprintOf(String type, String content, String hint, String totpId) {
+            return ContentFingerprint.of(type, content, hint, totpId);
+        }
+
+        /**
+         * 区块内容（压缩存储时在此解压，仅在解锁成功后调用）
+         */
+        public String content() {
+            return body.text();
+        }
+
+        /**
+         * 替换内容的存储形式
+         */
+        public EncryptedBlock withBody(CompressedText newBody) {
+            return new EncryptedBlock(blockId, type, passwordHash, newBody, hint, totpId, fingerprint);
+        }
+
+        /**
+         * 替换密码哈希（重新哈希后）
+         */
+        public EncryptedBlock withPasswordHash(String newPasswordHash) {
+            return new EncryptedBlock(blockId, type, newPasswordHash, body, hint, totpId, fingerprint);
+        }
     }
 
     public record VerifyResult(
@@ -570,92 +586,36 @@ public class EncryptContentProcessor implements ReactivePostContentHandler {
             int lockRemainingMinutes) {
     }
 
-    public record SecurityConfig(
-            int maxFailAttempts,
-            int lockDurationMinutes,
-            boolean enableUnlockLog) {
+    /**
+     * 通过的验证方式及其描述，全部未通过时均为 null
+     */
+    private record Match(UnlockVerifier verifier, String label) {
+        static final Match NONE = new Match(null, null);
     }
 
-    // 区块 TOTP 配置（与 BlockTotpEndpoint 保持一致）
-    public static class BlockTotpConfig {
-        public String secret;
-        public int durationDays;
-        public String createdAt;
-        public String label;
-        public boolean enabled;
+    /**
+     * 一次渲染的占位符及待登记的区块
+     */
+    private record RenderedBlocks(List<ProcessedContentCache.Placeholder> placeholders,
+            List<BlockSource> sources) {
     }
 
     /**
-     * 验证区块 TOTP 密码（同步方法，从缓存读取）
+     * 待登记的加密区块（渲染时解析出的属性）
      */
-    private static boolean verifyBlockTotp(String blockId, String inputCode) {
-        log.info("verifyBlockTotp 调用 - blockId: {}, inputCode: {}, 缓存中的keys: {}",
-                blockId, inputCode, BLOCK_TOTP_CACHE.keySet());
-
-        BlockTotpConfig config = BLOCK_TOTP_CACHE.get(blockId);
-        if (config == null) {
-            log.warn("缓存中未找到区块 TOTP 配置 - blockId: {}", blockId);
-            return false;
-        }
-        if (!config.enabled) {
-            log.warn("区块 TOTP 已禁用 - blockId: {}", blockId);
-            return false;
-        }
-
-        try {
-            LocalDateTime createdAt = LocalDateTime.parse(config.createdAt);
-            String expectedCode = TotpUtils.getCodeByCreationTime(
-                    config.secret, createdAt, config.durationDays);
-
-            log.info("区块 TOTP 验证详情 - blockId: {}, 期望密码: {}, 输入密码: {}, createdAt: {}, durationDays: {}",
-                    blockId, expectedCode, inputCode, createdAt, config.durationDays);
-
-            boolean result = TotpUtils.verifyCodeByCreationTime(
-                    config.secret, inputCode, createdAt, config.durationDays);
-
-            log.info("区块 TOTP 验证结果 - blockId: {}, result: {}", blockId, result);
-            return result;
-        } catch (Exception e) {
-            log.error("区块 TOTP 验证异常 - blockId: {}, error: {}", blockId, e.getMessage(), e);
-            return false;
-        }
+    private record BlockSource(String postName, String blockId, String type, String password, String content,
+            String hint, String totpId) {
     }
 
-    // 失败尝试信息
-    private static class FailedAttemptInfo {
-        int failCount = 0;
-        Instant lockUntil = null;
-        Instant lastAttempt = Instant.now();
-
-        void increment() {
-            // 如果距离上次尝试超过锁定时间，重置计数
-            if (lockUntil != null && Instant.now().isAfter(lockUntil)) {
-                failCount = 0;
-                lockUntil = null;
-            }
-            failCount++;
-            lastAttempt = Instant.now();
-        }
-
-        boolean isLocked() {
-            if (lockUntil == null) {
-                return false;
-            }
-            if (Instant.now().isAfter(lockUntil)) {
-                // 锁定已过期，重置
-                failCount = 0;
-                lockUntil = null;
-                return false;
-            }
-            return true;
-        }
+    /**
+     * 批量解锁的分组键：验证结果只取决于密码哈希和动态密码配置
+     */
+    private record VerifyGroup(String passwordHash, String totpId) {
+    }
 
-        long getRemainingLockMinutes() {
-            if (lockUntil == null) {
-                return 0;
-            }
-            long seconds = lockUntil.getEpochSecond() - Instant.now().getEpochSecond();
-            return Math.max(1, (seconds + 59) / 60); // 向上取整
-        }
+    public record SecurityConfig(
+            int maxFailAttempts,
+            int lockDurationMinutes,
+            boolean enableUnlockLog) {
     }
 }
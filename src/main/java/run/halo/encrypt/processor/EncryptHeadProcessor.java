@@ -230,7 +230,7 @@ public class EncryptHeadProcessor implements TemplateHeadProcessor {
           'use strict';
 
           var API_BASE = '/apis/api.encrypt.halo.run/v1alpha1';
-          var COOKIE_PREFIX = 'encrypt_unlocked_';
+          var TOKEN_COOKIE = 'encrypt_unlock';
 
           function initEncryptBlocks() {
             var blocks = document.querySelectorAll('.encrypt-block');
@@ -247,14 +247,59 @@ public class EncryptHeadProcessor implements TemplateHeadProcessor {
             });
           }
 
-          // 检查是否有解锁 Cookie
+          // 检查解锁令牌 Cookie 中是否包含该区块（签名由服务端校验）
           function hasUnlockCookie(blockId) {
-            var cookieName = COOKIE_PREFIX + blockId;
-            return document.cookie.split(';').some(function(c) {
-              return c.trim().startsWith(cookieName + '=');
-            });
+            var match = /^block-([0-9a-f]{1,12})$/i.exec(blockId);
+            return !!match && readTokenBlocks().indexOf(parseInt(match[1], 16)) >= 0;
+          }
+
+          // 读取解锁令牌中的区块编号：版本 | 密钥编号 | 签发时间 | 有效期 | 区块数 | 编号差值（varint）| 签名
+          function readTokenBlocks() {
+            var cookie = document.cookie.split(';').map(function(c) {
+              return c.trim();
+            }).filter(function(c) {
+              return c.indexOf(TOKEN_COOKIE + '=') === 0;
+            })[0];
+            if (!cookie) return [];
+
+            try {
+              var base64 = cookie.substring(TOKEN_COOKIE.length + 1).replace(/-/g, '+').replace(/_/g, '/');
+              while (base64.length % 4) base64 += '=';
+              var binary = atob(base64);
+              var pos = 0;
+              var readVarint = function() {
+                var value = 0, scale = 1, b;
+                do {
+                  b = binary.charCodeAt(pos++);
+                  value += (b & 0x7f) * scale;
+                  scale *= 128;
+                } while (b & 0x80);
+                return value;
+              };
+
+              if (binary.charCodeAt(pos++) !== 1) return [];
+              pos++;
+              var issuedAt = readVarint();
+              if (Date.now() / 1000 >= issuedAt + readVarint()) return [];
+              var count = readVarint();
+              var blocks = [];
+              var previous = 0;
+              for (var i = 0; i < count; i++) {
+                previous += readVarint();
+                blocks.push(previous);
+              }
+              return blocks;
+            } catch (e) {
+              return [];
+            }
           }
 
+          // 令牌解码只在此处实现，encrypt-unlock.js 通过 window.EncryptUnlockToken 复用
+          window.EncryptUnlockToken = {
+            has: hasUnlockCookie,
+            blocks: readTokenBlocks
+          };
+
           // 自动解锁（已有 Cookie）
           function autoUnlock(block, blockId) {
             fetch(API_BASE + '/get-content/' + blockId, {
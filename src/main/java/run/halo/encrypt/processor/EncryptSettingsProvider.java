@@ -0,0 +1,135 @@
+package run.halo.encrypt.processor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.encrypt.crypto.KdfParameters;
+import run.halo.encrypt.model.TotpPassword;
+
+/**
+ * 插件配置快照提供者
+ * 从插件设置 ConfigMap 构建 {@link EncryptSettingsSnapshot}，
+ * 通过原子引用发布；由 ConfigMap watch 事件触发重建，读取方不做任何 I/O
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EncryptSettingsProvider {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    // 插件设置 ConfigMap：各设置分组（security、totp、performance）及 TOTP 密码列表
+    public static final String CONFIG_MAP_NAME = "plugin-encrypt-configMap";
+    private static final String TOTP_PASSWORDS_KEY = "totpPasswords";
+
+    private final ReactiveExtensionClient extensionClient;
+
+    private final AtomicReference<EncryptSettingsSnapshot> snapshot =
+            new AtomicReference<>(EncryptSettingsSnapshot.DEFAULTS);
+    private volatile boolean loaded = false;
+
+    /**
+     * 当前配置快照（尚未加载时为默认值）
+     */
+    public EncryptSettingsSnapshot current() {
+        return snapshot.get();
+    }
+
+    /**
+     * 确保配置已加载，已加载时不做 I/O
+     */
+    public Mono<EncryptSettingsSnapshot> ensureLoaded() {
+        if (loaded) {
+            return Mono.just(snapshot.get());
+        }
+        return refresh();
+    }
+
+    /**
+     * 重新读取 ConfigMap 并发布新的快照
+     */
+    public Mono<EncryptSettingsSnapshot> refresh() {
+        return fetchData(CONFIG_MAP_NAME)
+                .map(this::build)
+                .doOnNext(built -> {
+                    snapshot.set(built);
+                    loaded = true;
+                    log.debug("配置快照已更新 - TOTP 密码: {}", built.totpPasswords().size());
+                });
+    }
+
+    private Mono<Map<String, String>> fetchData(String configMapName) {
+        return extensionClient.fetch(ConfigMap.class, configMapName)
+                .map(configMap -> configMap.getData() == null
+                        ? Map.<String, String>of() : configMap.getData())
+                .defaultIfEmpty(Map.of())
+                .onErrorResume(e -> {
+                    log.debug("ConfigMap {} 加载失败: {}", configMapName, e.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    private EncryptSettingsSnapshot build(Map<String, String> pluginData) {
+        JsonNode security = readGroup(pluginData, "security");
+        JsonNode totp = readGroup(pluginData, "totp");
+        JsonNode performance = readGroup(pluginData, "performance");
+        JsonNode style = readGroup(pluginData, "style");
+
+        return new EncryptSettingsSnapshot(
+                security.path("maxFailAttempts").asInt(5),
+                security.path("lockDuration").asInt(15),
+                security.path("enableUnlockLog").asBoolean(true),
+                totp.path("masterKey").asText(""),
+                readTotpPasswords(pluginData),
+                performance.path("blockCacheMaxMb").asLong(64) * 1024 * 1024,
+                performance.path("compressBlocks").asBoolean(false),
+                performance.path("compressThresholdKb").asInt(4) * 1024,
+                performance.path("compressLevel").asInt(6),
+                style.path("placeholderTemplate").asText(""),
+                totp.path("allowAdjacentWindow").asBoolean(false) ? 1 : 0,
+                performance.path("inlineReveal").asBoolean(false),
+                new KdfParameters(
+                        security.path("kdfAlgorithm").asText(KdfParameters.DEFAULTS.algorithm()),
+                        security.path("bcryptStrength").asInt(KdfParameters.DEFAULTS.bcryptStrength()),
+                        security.path("pbkdf2Iterations").asInt(KdfParameters.DEFAULTS.pbkdf2Iterations()),
+                        security.path("argon2MemoryKb").asInt(KdfParameters.DEFAULTS.argon2MemoryKb()),
+                        security.path("argon2Iterations").asInt(KdfParameters.DEFAULTS.argon2Iterations())));
+    }
+
+    private JsonNode readGroup(Map<String, String> data, String group) {
+        String json = data.get(group);
+        if (json == null || json.isEmpty()) {
+            return MissingNode.getInstance();
+        }
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (Exception e) {
+            log.warn("解析设置分组 {} 失败: {}", group, e.getMessage());
+            return MissingNode.getInstance();
+        }
+    }
+
+    private List<TotpPassword> readTotpPasswords(Map<String, String> data) {
+        try {
+            String json = data.getOrDefault(TOTP_PASSWORDS_KEY, "[]");
+            return OBJECT_MAPPER.readValue(json, new TypeReference<List<TotpPassword>>() {
+            });
+        } catch (Exception e) {
+            log.warn("解析 TOTP 密码列表失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
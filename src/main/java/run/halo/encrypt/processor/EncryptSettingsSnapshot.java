@@ -0,0 +1,60 @@
+package run.halo.encrypt.processor;
+
+import java.util.List;
+import java.util.Objects;
+import run.halo.encrypt.crypto.KdfParameters;
+import run.halo.encrypt.model.TotpPassword;
+
+/**
+ * 插件配置快照（不可变）
+ * 汇总安全设置、万能密钥和全局 TOTP 密码（区块 TOTP 配置见 {@link BlockTotpRegistry}），
+ * 仅在相关 ConfigMap 变更时重建，渲染和解锁路径直接读取，无需 I/O
+ *
+ * @param maxFailAttempts     密码错误锁定次数
+ * @param lockDurationMinutes 锁定时间（分钟）
+ * @param enableUnlockLog     是否记录解锁日志
+ * @param masterKey           万能密钥（未设置时为空字符串）
+ * @param totpPasswords       全局 TOTP 密码列表
+ * @param blockCacheMaxBytes  内存中加密区块的总大小上限（字节）
+ * @param compressBlocks      是否压缩存储较长的区块内容
+ * @param compressThreshold   压缩阈值（字符数）
+ * @param compressLevel       压缩级别（1~9）
+ * @param placeholderTemplate 自定义占位符模板（空字符串表示使用内置模板）
+ * @param totpSkewWindows     全局动态密码额外接受的相邻周期数（0 表示只接受当前周期）
+ * @param inlineReveal        渲染时是否直接输出读者已解锁区块的内容
+ * @param kdf                 区块密码的哈希算法及成本参数
+ * @author Developer
+ */
+public record EncryptSettingsSnapshot(
+        int maxFailAttempts,
+        int lockDurationMinutes,
+        boolean enableUnlockLog,
+        String masterKey,
+        List<TotpPassword> totpPasswords,
+        long blockCacheMaxBytes,
+        boolean compressBlocks,
+        int compressThreshold,
+        int compressLevel,
+        String placeholderTemplate,
+        int totpSkewWindows,
+        boolean inlineReveal,
+        KdfParameters kdf) {
+
+    public static final long DEFAULT_BLOCK_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    public static final EncryptSettingsSnapshot DEFAULTS =
+            new EncryptSettingsSnapshot(5, 15, true, "", List.of(), DEFAULT_BLOCK_CACHE_MAX_BYTES,
+                    false, 4096, 6, "", 0, false, KdfParameters.DEFAULTS);
+
+    public EncryptSettingsSnapshot {
+        masterKey = masterKey == null ? "" : masterKey;
+        totpPasswords = totpPasswords == null ? List.of()
+                : totpPasswords.stream().filter(Objects::nonNull).toList();
+        blockCacheMaxBytes = blockCacheMaxBytes > 0 ? blockCacheMaxBytes : DEFAULT_BLOCK_CACHE_MAX_BYTES;
+        compressThreshold = Math.max(0, compressThreshold);
+        compressLevel = Math.min(9, Math.max(1, compressLevel));
+        placeholderTemplate = placeholderTemplate == null ? "" : placeholderTemplate;
+        totpSkewWindows = Math.min(1, Math.max(0, totpSkewWindows));
+        kdf = kdf == null ? KdfParameters.DEFAULTS : kdf;
+    }
+}
@@ -0,0 +1,231 @@
+package run.halo.encrypt.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * [encrypt ...]...[/encrypt] 短代码的单遍扫描解析器
+ * 一次扫描同时解析标签和全部属性，不回溯，解析时间与内容长度成线性关系
+ * 格式错误的标签保持原样输出，并记录所在的行号和列号
+ *
+ * @author Developer
+ */
+public class EncryptShortcodeTokenizer {
+
+    private static final String OPEN_TAG = "[encrypt";
+    private static final String CLOSE_TAG = "[/encrypt]";
+
+    // 替换后内容的预留增长空间（占位符 HTML 通常比原始内容更长）
+    private static final int GROWTH_RESERVE = 1024;
+
+    private final String content;
+    private final List<Problem> problems = new ArrayList<>();
+
+    // 行列号跟踪（只向前推进）
+    private int trackedPos = 0;
+    private int line = 1;
+    private int lineStart = 0;
+
+    public EncryptShortcodeTokenizer(String content) {
+        this.content = content;
+    }
+
+    /**
+     * 扫描内容，将每个完整的加密区块替换为 renderer 的输出
+     */
+    public String render(Function<Shortcode, String> renderer) {
+        int length = content.length();
+        StringBuilder sb = new StringBuilder(length + GROWTH_RESERVE);
+        int copyFrom = 0;
+        int pos = 0;
+
+        while (pos < length) {
+            int open = indexOfIgnoreCase(OPEN_TAG, pos);
+            if (open < 0) {
+                break;
+            }
+
+            int afterName = open + OPEN_TAG.length();
+            if (afterName >= length) {
+                break;
+            }
+
+            char next = content.charAt(afterName);
+            if (!isWhitespace(next)) {
+                if (next == ']') {
+                    report(open, "加密标签缺少属性");
+                }
+                // 其他情况如 [encrypted 不是加密标签
+                pos = afterName;
+                continue;
+            }
+
+            int attrEnd = content.indexOf(']', afterName);
+            if (attrEnd < 0) {
+                // 之后不会再有闭合的 ]，后续标签也无法匹配
+                report(open, "加密标签缺少 ']'");
+                break;
+            }
+            if (isBlank(afterName, attrEnd)) {
+                report(open, "加密标签缺少属性");
+                pos = attrEnd + 1;
+                continue;
+            }
+
+            int bodyStart = attrEnd + 1;
+            int close = indexOfIgnoreCase(CLOSE_TAG, bodyStart);
+            if (close < 0) {
+                // 之后不会再有 [/encrypt]，后续标签也无法匹配
+                report(open, "加密标签缺少 [/encrypt]");
+                break;
+            }
+
+            advanceTo(open);
+            Shortcode shortcode = new Shortcode(
+                    parseAttributes(afterName, attrEnd),
+                    content.substring(bodyStart, close).trim(),
+                    line,
+                    open - lineStart + 1);
+
+            sb.append(content, copyFrom, open);
+            sb.append(renderer.apply(shortcode));
+
+            pos = close + CLOSE_TAG.length();
+            copyFrom = pos;
+        }
+
+        if (copyFrom == 0) {
+            return content;
+        }
+        sb.append(content, copyFrom, length);
+        return sb.toString();
+    }
+
+    /**
+     * 解析过程中发现的格式问题
+     */
+    public List<Problem> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * 解析属性：name="value" 或 name='value'，名称支持字母、数字、下划线和连字符
+     * 同名属性以第一次出现的为准
+     */
+    private Map<String, String> parseAttributes(int from, int to) {
+        Map<String, String> attributes = new HashMap<>(8);
+        int i = from;
+        while (i < to) {
+            if (!isNameChar(content.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < to && isNameChar(content.charAt(i))) {
+                i++;
+            }
+            int nameEnd = i;
+
+            int j = skipWhitespace(nameEnd, to);
+            if (j >= to || content.charAt(j) != '=') {
+                continue;
+            }
+            j = skipWhitespace(j + 1, to);
+            if (j >= to || !isQuote(content.charAt(j))) {
+                continue;
+            }
+
+            int valueStart = j + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < to && !isQuote(content.charAt(valueEnd))) {
+                valueEnd++;
+            }
+            if (valueEnd >= to) {
+                continue;
+            }
+
+            String name = content.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            attributes.putIfAbsent(name, content.substring(valueStart, valueEnd));
+            i = valueEnd + 1;
+        }
+        return attributes;
+    }
+
+    private int indexOfIgnoreCase(String tag, int from) {
+        int i = content.indexOf('[', from);
+        while (i >= 0) {
+            if (content.regionMatches(true, i, tag, 0, tag.length())) {
+                return i;
+            }
+            i = content.indexOf('[', i + 1);
+        }
+        return -1;
+    }
+
+    private void report(int pos, String message) {
+        advanceTo(pos);
+        problems.add(new Problem(line, pos - lineStart + 1, message));
+    }
+
+    private void advanceTo(int pos) {
+        for (int i = trackedPos; i < pos; i++) {
+            if (content.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        trackedPos = Math.max(trackedPos, pos);
+    }
+
+    private int skipWhitespace(int from, int to) {
+        int i = from;
+        while (i < to && isWhitespace(content.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isBlank(int from, int to) {
+        return skipWhitespace(from, to) >= to;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-';
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    /**
+     * 解析出的加密区块
+     *
+     * @param attributes 属性（名称统一小写）
+     * @param body       区块内容（已去除首尾空白）
+     * @param line       开始标签所在行（从 1 开始）
+     * @param column     开始标签所在列（从 1 开始）
+     */
+    public record Shortcode(Map<String, String> attributes, String body, int line, int column) {
+
+        public String attribute(String name, String defaultValue) {
+            return attributes.getOrDefault(name, defaultValue);
+        }
+    }
+
+    /**
+     * 格式问题（行号、列号从 1 开始）
+     */
+    public record Problem(int line, int column, String message) {
+    }
+}
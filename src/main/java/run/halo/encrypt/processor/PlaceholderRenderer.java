@@ -0,0 +1,252 @@
+package run.halo.encrypt.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 加密区块占位符渲染器
+ * 占位符模板预编译为静态片段和变量的序列，每个区块（blockId、type、hint、hintType）
+ * 渲染后的 HTML 片段按键缓存，重复渲染直接复用，未命中时也只做片段拼接
+ *
+ * 模板可在设置中覆盖（留空使用内置模板），支持的变量：
+ * {{blockId}}、{{type}}、{{typeLabel}}、{{hint}}（已按 hintType 生成的提示 HTML）
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlaceholderRenderer {
+
+    // 片段缓存上限（按字符串占用的字节估算）
+    private static final long FRAGMENT_CACHE_MAX_BYTES = 4L * 1024 * 1024;
+
+    static final String DEFAULT_TEMPLATE = """
+            <div class="encrypt-block" data-block-id="{{blockId}}" data-type="{{type}}">
+                <div class="encrypt-lock-icon">
+                    <svg viewBox="0 0 24 24" width="48" height="48">
+                        <path fill="currentColor" d="M12 17a2 2 0 0 0 2-2a2 2 0 0 0-2-2a2 2 0 0 0-2 2a2 2 0 0 0 2 2m6-9a2 2 0 0 1 2 2v10a2 2 0 0 1-2 2H6a2 2 0 0 1-2-2V10a2 2 0 0 1 2-2h1V6a5 5 0 0 1 5-5a5 5 0 0 1 5 5v2h1m-6-5a3 3 0 0 0-3 3v2h6V6a3 3 0 0 0-3-3z"/>
+                    </svg>
+                </div>
+                <div class="encrypt-info">
+                    <span class="encrypt-type-label">{{typeLabel}}</span>
+                    <p class="encrypt-desc">此内容已加密，请输入密码解锁</p>
+                    {{hint}}
+                </div>
+                <div class="encrypt-unlock-form">
+                    <input type="password" class="encrypt-password-input" placeholder="请输入密码" />
+                    <button class="encrypt-unlock-btn" type="button">解锁</button>
+                </div>
+                <p class="encrypt-error-msg" style="display: none;"></p>
+            </div>
+            """;
+
+    private final EncryptSettingsProvider settingsProvider;
+
+    // 当前模板及其片段缓存（模板变化时整体替换）
+    private volatile CompiledTemplate compiled = CompiledTemplate.compile(DEFAULT_TEMPLATE);
+
+    /**
+     * 渲染区块占位符（不包含加密内容）
+     */
+    public String render(String blockId, String type, String hint, String hintType) {
+        CompiledTemplate template = currentTemplate();
+        FragmentKey key = new FragmentKey(blockId, type, hint, hintType);
+        String fragment = template.fragments.get(key);
+        if (fragment == null) {
+            fragment = template.render(key);
+            template.fragments.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    public WeightedLruCache.Stats stats() {
+        return compiled.fragments.stats();
+    }
+
+    /**
+     * 按设置中的模板重新编译（模板未变化时直接返回当前模板）
+     */
+    private CompiledTemplate currentTemplate() {
+        String source = settingsProvider.current().placeholderTemplate();
+        if (source.isBlank()) {
+            source = DEFAULT_TEMPLATE;
+        }
+        CompiledTemplate template = compiled;
+        if (!template.source.equals(source)) {
+            template = CompiledTemplate.compile(source);
+            compiled = template;
+            log.info("占位符模板已更新，片段数: {}", template.segments.size());
+        }
+        return template;
+    }
+
+    /**
+     * 根据提示类型生成 HTML
+     * 支持: text（默认，转义）、html（原样输出）、image（图片标签）
+     */
+    static String hintHtml(String hint, String hintType) {
+        if (hint == null || hint.isEmpty()) {
+            return "";
+        }
+
+        return switch (hintType.toLowerCase(Locale.ROOT)) {
+            case "html" ->
+                // HTML 类型：直接输出（允许链接等）
+                "<div class=\"encrypt-hint encrypt-hint-html\">" + hint + "</div>";
+            case "image" ->
+                // 图片类型：生成 img 标签
+                "<div class=\"encrypt-hint encrypt-hint-image\"><img src=\"" + escapeHtml(hint)
+                        + "\" alt=\"提示图片\" /></div>";
+            default ->
+                // 文本类型：转义 HTML
+                "<p class=\"encrypt-hint\">" + escapeHtml(hint) + "</p>";
+        };
+    }
+
+    /**
+     * 单遍 HTML 转义，无需转义时直接返回原字符串
+     */
+    static String escapeHtml(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        int copyFrom = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String replacement = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (replacement == null) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(text.length() + 16);
+            }
+            sb.append(text, copyFrom, i).append(replacement);
+            copyFrom = i + 1;
+        }
+        if (sb == null) {
+            return text;
+        }
+        sb.append(text, copyFrom, text.length());
+        return sb.toString();
+    }
+
+    private enum Variable {
+        BLOCK_ID("blockId"),
+        TYPE("type"),
+        TYPE_LABEL("typeLabel"),
+        HINT("hint");
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        static Variable of(String name) {
+            for (Variable variable : values()) {
+                if (variable.name.equals(name)) {
+                    return variable;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 模板片段：静态文本（variable 为 null）或变量
+     */
+    private record Segment(String text, Variable variable) {
+    }
+
+    private record FragmentKey(String blockId, String type, String hint, String hintType) {
+    }
+
+    /**
+     * 预编译的模板
+     */
+    private static final class CompiledTemplate {
+
+        private final String source;
+        private final List<Segment> segments;
+        private final int staticLength;
+        private final WeightedLruCache<FragmentKey, String> fragments =
+                new WeightedLruCache<>(FRAGMENT_CACHE_MAX_BYTES, fragment -> 2L * fragment.length() + 64);
+
+        private CompiledTemplate(String source, List<Segment> segments) {
+            this.source = source;
+            this.segments = List.copyOf(segments);
+            this.staticLength = segments.stream()
+                    .filter(segment -> segment.variable() == null)
+                    .mapToInt(segment -> segment.text().length())
+                    .sum();
+        }
+
+        /**
+         * 将 {{name}} 解析为变量，未知变量按原样保留为静态文本
+         */
+        static CompiledTemplate compile(String source) {
+            List<Segment> segments = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            int pos = 0;
+            while (pos < source.length()) {
+                int open = source.indexOf("{{", pos);
+                int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+                if (close < 0) {
+                    break;
+                }
+                Variable variable = Variable.of(source.substring(open + 2, close).trim());
+                if (variable == null) {
+                    text.append(source, pos, close + 2);
+                } else {
+                    text.append(source, pos, open);
+                    if (!text.isEmpty()) {
+                        segments.add(new Segment(text.toString(), null));
+                        text.setLength(0);
+                    }
+                    segments.add(new Segment(null, variable));
+                }
+                pos = close + 2;
+            }
+            text.append(source, pos, source.length());
+            if (!text.isEmpty()) {
+                segments.add(new Segment(text.toString(), null));
+            }
+            return new CompiledTemplate(source, segments);
+        }
+
+        String render(FragmentKey key) {
+            String blockId = escapeHtml(key.blockId());
+            String type = escapeHtml(key.type());
+            String typeLabel = "password".equals(key.type()) ? "密码保护" : "付费内容";
+            String hint = hintHtml(key.hint(), key.hintType());
+
+            StringBuilder sb = new StringBuilder(staticLength + blockId.length() + hint.length() + 64);
+            for (Segment segment : segments) {
+                if (segment.variable() == null) {
+                    sb.append(segment.text());
+                    continue;
+                }
+                sb.append(switch (segment.variable()) {
+                    case BLOCK_ID -> blockId;
+                    case TYPE -> type;
+                    case TYPE_LABEL -> typeLabel;
+                    case HINT -> hint;
+                });
+            }
+            return sb.toString();
+        }
+    }
+}
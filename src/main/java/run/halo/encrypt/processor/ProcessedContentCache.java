@@ -0,0 +1,198 @@
+package run.halo.encrypt.processor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.app.core.extension.content.Post;
+import run.halo.app.theme.ReactivePostContentHandler.PostContentContext;
+import run.halo.encrypt.util.ContentFingerprint;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 文章处理结果缓存
+ * 缓存加密处理链（ArticleEncryptProcessor -> CategoryEncryptProcessor -> EncryptContentProcessor）
+ * 的最终 HTML、保护后的摘要和各区块的占位符，键为文章名称 + metadata.version + 配置版本号 + 源内容指纹
+ *
+ * 文章变更时 metadata.version 变化，配置（插件设置、区块 TOTP）变更时由 watch 事件递增配置版本号，
+ * 两者都会使旧条目失效；已发布内容和预览（草稿）内容的 Post 与版本号相同，以源内容（context.raw，
+ * 处理链中不会修改）的指纹区分，预览草稿后读者不会看到未发布的内容
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class ProcessedContentCache {
+
+    // 缓存上限（按字符串占用的字节估算）
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    private final AtomicLong settingsGeneration = new AtomicLong();
+
+    private final WeightedLruCache<CacheKey, CachedContent> cache =
+            new WeightedLruCache<>(MAX_BYTES, CachedContent::weight);
+
+    /**
+     * 查找缓存的处理结果
+     */
+    public CachedContent get(PostContentContext context) {
+        CacheKey key = keyOf(context);
+        if (key == null) {
+            return null;
+        }
+        CachedContent cached = cache.get(key);
+        if (cached != null && cached.isStale()) {
+            cache.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 判断上下文中的内容是否正是本次从缓存取出的结果（引用相等），后续处理器据此跳过处理
+     */
+    public boolean isCachedOutput(PostContentContext context) {
+        String content = context.getContent();
+        if (content == null) {
+            return false;
+        }
+        CacheKey key = keyOf(context);
+        if (key == null) {
+            return false;
+        }
+        CachedContent cached = cache.peek(key);
+        return cached != null && cached.content() == content;
+    }
+
+    /**
+     * 缓存结果中各区块的占位符（上下文内容不是缓存结果时返回空列表）
+     */
+    public List<Placeholder> placeholdersOf(PostContentContext context) {
+        CacheKey key = keyOf(context);
+        if (key == null) {
+            return List.of();
+        }
+        CachedContent cached = cache.peek(key);
+        return cached != null && cached.content() == context.getContent() ? cached.placeholders() : List.of();
+    }
+
+    /**
+     * 缓存处理结果
+     *
+     * @param generation    处理开始时的配置版本号，处理期间配置变更则不缓存
+     * @param dateSensitive 内容是否包含 expires 属性（跨天后结果可能变化）
+     * @param placeholders  内容中各加密区块的占位符
+     */
+    public void put(PostContentContext context, long generation, boolean dateSensitive,
+            List<Placeholder> placeholders) {
+        if (generation != settingsGeneration.get()) {
+            return;
+        }
+        Post post = context.getPost();
+        CacheKey key = keyOf(context, generation);
+        if (key == null || context.getContent() == null) {
+            return;
+        }
+        String excerpt = null;
+        if (post.getSpec() != null && post.getSpec().getExcerpt() != null) {
+            excerpt = post.getSpec().getExcerpt().getRaw();
+        }
+        cache.put(key, new CachedContent(context.getContent(), excerpt,
+                dateSensitive ? LocalDate.now() : null, List.copyOf(placeholders)));
+    }
+
+    /**
+     * 当前配置版本号
+     */
+    public long currentGeneration() {
+        return settingsGeneration.get();
+    }
+
+    /**
+     * 配置变更：递增版本号并清空缓存
+     */
+    public void onSettingsChanged() {
+        long generation = settingsGeneration.incrementAndGet();
+        cache.clear();
+        log.debug("配置已变更，清空文章处理缓存，版本号: {}", generation);
+    }
+
+    /**
+     * 文章变更：移除该文章的所有缓存条目
+     */
+    public void invalidatePost(String postName) {
+        cache.removeIf((key, value) -> key.postName().equals(postName));
+    }
+
+    public WeightedLruCache.Stats stats() {
+        return cache.stats();
+    }
+
+    private CacheKey keyOf(PostContentContext context) {
+        return keyOf(context, settingsGeneration.get());
+    }
+
+    private CacheKey keyOf(PostContentContext context, long generation) {
+        Post post = context.getPost();
+        if (post == null || post.getMetadata() == null || context.getRaw() == null) {
+            return null;
+        }
+        Long version = post.getMetadata().getVersion();
+        String name = post.getMetadata().getName();
+        if (version == null || name == null) {
+            return null;
+        }
+        return new CacheKey(name, version, generation,
+                ContentFingerprint.of(context.getRaw(), context.getRawType()));
+    }
+
+    /**
+     * @param source 源内容指纹（区分同一版本的已发布内容和预览内容）
+     */
+    record CacheKey(String postName, long version, long generation, ContentFingerprint source) {
+    }
+
+    /**
+     * 缓存的处理结果
+     *
+     * @param content      最终 HTML
+     * @param excerpt      保护后的摘要（可能为 null）
+     * @param renderedOn   渲染日期，仅内容含过期时间时设置，跨天即失效
+     * @param placeholders 各加密区块的占位符，用于直接输出读者已解锁的区块
+     */
+    public record CachedContent(String content, String excerpt, LocalDate renderedOn,
+            List<Placeholder> placeholders) {
+
+        /**
+         * 将缓存结果写回上下文
+         */
+        public void applyTo(PostContentContext context) {
+            context.setContent(content);
+            var post = context.getPost();
+            if (excerpt != null && post.getSpec() != null && post.getSpec().getExcerpt() != null) {
+                post.getSpec().getExcerpt().setRaw(excerpt);
+            }
+        }
+
+        boolean isStale() {
+            return renderedOn != null && !renderedOn.equals(LocalDate.now());
+        }
+
+        long weight() {
+            long placeholderChars = 0;
+            for (Placeholder placeholder : placeholders) {
+                placeholderChars += placeholder.blockId().length() + placeholder.html().length();
+            }
+            return 2L * (content.length() + (excerpt != null ? excerpt.length() : 0) + placeholderChars) + 64;
+        }
+    }
+
+    /**
+     * 渲染结果中一个加密区块的占位符
+     *
+     * @param html 占位符 HTML（在最终内容中原样出现）
+     */
+    public record Placeholder(String blockId, String html) {
+    }
+}
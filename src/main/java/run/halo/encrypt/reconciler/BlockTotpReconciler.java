@@ -0,0 +1,49 @@
+package run.halo.encrypt.reconciler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.encrypt.extension.BlockTotp;
+import run.halo.encrypt.processor.BlockTotpRegistry;
+import run.halo.encrypt.verify.TotpCodeScheduler;
+
+/**
+ * 区块 TOTP 变更监听器
+ * 逐个更新 {@link BlockTotpRegistry} 中对应区块的配置，删除时同时取消其周期调度
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlockTotpReconciler implements Reconciler<Reconciler.Request> {
+
+    private final BlockTotpRegistry blockTotpRegistry;
+    private final TotpCodeScheduler codeScheduler;
+
+    @Override
+    public Result reconcile(Request request) {
+        try {
+            blockTotpRegistry.refresh(request.name())
+                    .doOnNext(removed -> {
+                        codeScheduler.remove(TotpCodeScheduler.BLOCK_PREFIX + removed.blockId());
+                        log.debug("区块 TOTP 已移除: {}", removed.blockId());
+                    })
+                    .block();
+        } catch (Exception e) {
+            log.warn("更新区块 TOTP 配置失败 - name: {}, error: {}", request.name(), e.getMessage());
+        }
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder
+                .extension(new BlockTotp())
+                .syncAllOnStart(false)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package run.halo.encrypt.reconciler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import run.halo.app.core.extension.content.Category;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.encrypt.processor.ProcessedContentCache;
+
+/**
+ * 分类变更监听器
+ * 分类加密按分类 slug 匹配，分类变更（如修改 slug）时使文章处理缓存失效
+ *
+ * @author Developer
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryContentCacheReconciler implements Reconciler<Reconciler.Request> {
+
+    private final ProcessedContentCache contentCache;
+
+    @Override
+    public Result reconcile(Request request) {
+        contentCache.onSettingsChanged();
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder
+                .extension(new Category())
+                .syncAllOnStart(false)
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package run.halo.encrypt.reconciler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.encrypt.processor.EncryptSettingsProvider;
+import run.halo.encrypt.processor.EncryptSettingsSnapshot;
+import run.halo.encrypt.processor.ProcessedContentCache;
+import run.halo.encrypt.token.UnlockTokenService;
+import run.halo.encrypt.verify.GlobalTotpCodeTable;
+
+/**
+ * 插件配置 ConfigMap 监听器
+ * 插件设置（含 TOTP 密码列表）变更时，重建配置快照和全局动态密码码表并使文章处理缓存失效；
+ * 解锁令牌密钥变更（其他实例轮换密钥）时重新读取密钥
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EncryptConfigReconciler implements Reconciler<Reconciler.Request> {
+
+    private final EncryptSettingsProvider settingsProvider;
+    private final ProcessedContentCache contentCache;
+    private final UnlockTokenService unlockTokenService;
+    private final GlobalTotpCodeTable globalTotpCodeTable;
+
+    @Override
+    public Result reconcile(Request request) {
+        if (UnlockTokenService.KEYS_CONFIG_MAP.equals(request.name())) {
+            unlockTokenService.reload().block();
+            return Result.doNotRetry();
+        }
+        if (!EncryptSettingsProvider.CONFIG_MAP_NAME.equals(request.name())) {
+            return Result.doNotRetry();
+        }
+        log.debug("检测到配置变更: {}", request.name());
+        try {
+            // 先发布新快照，再使缓存失效，避免用旧配置渲染的结果以新版本号缓存
+            EncryptSettingsSnapshot settings = settingsProvider.refresh().block();
+            if (settings != null) {
+                // 已删除的全局密码立即停止周期调度
+                globalTotpCodeTable.refresh(settings);
+            }
+        } catch (Exception e) {
+            log.warn("重建配置快照失败: {}", e.getMessage());
+        }
+        contentCache.onSettingsChanged();
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder
+                .extension(new ConfigMap())
+                .syncAllOnStart(false)
+                .build();
+    }
+}
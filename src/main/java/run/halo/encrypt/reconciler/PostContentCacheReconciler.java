@@ -0,0 +1,53 @@
+package run.halo.encrypt.reconciler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.app.core.extension.content.Post;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.encrypt.processor.EncryptBlockStore;
+import run.halo.encrypt.processor.ProcessedContentCache;
+
+/**
+ * 文章变更监听器
+ * 文章更新或删除时移除其处理缓存，及时释放旧版本占用的内存；文章删除后同时删除其名下的加密区块
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostContentCacheReconciler implements Reconciler<Reconciler.Request> {
+
+    private final ProcessedContentCache contentCache;
+    private final EncryptBlockStore blockStore;
+    private final ReactiveExtensionClient client;
+
+    @Override
+    public Result reconcile(Request request) {
+        contentCache.invalidatePost(request.name());
+        try {
+            boolean deleted = client.fetch(Post.class, request.name())
+                    .map(post -> post.getMetadata().getDeletionTimestamp() != null)
+                    .defaultIfEmpty(true)
+                    .block();
+            if (Boolean.TRUE.equals(deleted)) {
+                blockStore.deletePostBlocks(request.name());
+            }
+        } catch (Exception e) {
+            log.warn("清理已删除文章的加密区块失败 - post: {}, error: {}", request.name(), e.getMessage());
+        }
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder
+                .extension(new Post())
+                .syncAllOnStart(false)
+                .build();
+    }
+}
@@ -8,8 +8,6 @@ import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Sort;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
@@ -18,6 +16,7 @@ import run.halo.app.extension.ListOptions;
 import run.halo.app.extension.Metadata;
 import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.extension.router.selector.FieldSelector;
+import run.halo.encrypt.crypto.PasswordHasher;
 import run.halo.encrypt.extension.EncryptBlock;
 import run.halo.encrypt.extension.UnlockRecord;
 import run.halo.encrypt.service.EncryptService;
@@ -33,7 +32,7 @@ import run.halo.encrypt.service.EncryptService;
 public class EncryptServiceImpl implements EncryptService {
 
     private final ReactiveExtensionClient extensionClient;
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHasher passwordHasher;
 
     @Override
     public Mono<UnlockResult> unlockWithPassword(String blockId, String password,
@@ -45,7 +44,7 @@ public class EncryptServiceImpl implements EncryptService {
                     }
 
                     String storedHash = block.getSpec().getPasswordHash();
-                    if (!passwordEncoder.matches(password, storedHash)) {
+                    if (!passwordHasher.matches(password, storedHash)) {
                         return Mono.just(UnlockResult.failure("密码错误"));
                     }
 
@@ -95,8 +94,8 @@ public class EncryptServiceImpl implements EncryptService {
         // 如果有明文密码，先进行哈希
         if (encryptBlock.getSpec() != null
                 && StringUtils.hasText(encryptBlock.getSpec().getPasswordHash())
-                && !encryptBlock.getSpec().getPasswordHash().startsWith("$2")) {
-            String hashedPassword = passwordEncoder.encode(encryptBlock.getSpec().getPasswordHash());
+                && !PasswordHasher.isEncoded(encryptBlock.getSpec().getPasswordHash())) {
+            String hashedPassword = passwordHasher.encode(encryptBlock.getSpec().getPasswordHash());
             encryptBlock.getSpec().setPasswordHash(hashedPassword);
         }
 
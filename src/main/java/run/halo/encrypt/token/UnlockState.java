@@ -0,0 +1,35 @@
+package run.halo.encrypt.token;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 当前请求的解锁状态
+ * 由 {@link UnlockStateWebFilter} 在令牌校验通过后放入 Reactor Context，
+ * 渲染时据此直接输出读者已解锁的区块内容
+ *
+ * @author Developer
+ */
+public final class UnlockState {
+
+    private final UnlockToken token;
+    private final AtomicBoolean revealed = new AtomicBoolean();
+
+    UnlockState(UnlockToken token) {
+        this.token = token;
+    }
+
+    public boolean isUnlocked(String blockId) {
+        return token.contains(blockId);
+    }
+
+    /**
+     * 标记本次响应包含已解锁内容（响应将以 Cache-Control: private 返回）
+     */
+    public void markRevealed() {
+        revealed.set(true);
+    }
+
+    boolean revealed() {
+        return revealed.get();
+    }
+}
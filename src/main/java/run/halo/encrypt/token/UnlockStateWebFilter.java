@@ -0,0 +1,66 @@
+package run.halo.encrypt.token;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import run.halo.app.security.AdditionalWebFilter;
+import run.halo.encrypt.processor.EncryptSettingsProvider;
+
+/**
+ * 解锁状态过滤器
+ * GET 请求携带有效的解锁令牌时，把 {@link UnlockState} 放入 Reactor Context 供渲染使用；
+ * 响应中实际输出了已解锁内容时，在提交前标记为 Cache-Control: private 并按 Cookie 区分缓存
+ *
+ * 未开启“直接输出已解锁内容”或没有令牌 Cookie 的请求（绝大多数访客）直接放行，不做任何计算
+ *
+ * @author Developer
+ */
+@Component
+@RequiredArgsConstructor
+public class UnlockStateWebFilter implements AdditionalWebFilter {
+
+    private final UnlockTokenService unlockTokenService;
+    private final EncryptSettingsProvider settingsProvider;
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        if (!settingsProvider.current().inlineReveal()
+                || !HttpMethod.GET.equals(exchange.getRequest().getMethod())) {
+            return chain.filter(exchange);
+        }
+        HttpCookie cookie = exchange.getRequest().getCookies().getFirst(UnlockTokenService.COOKIE_NAME);
+        if (cookie == null) {
+            return chain.filter(exchange);
+        }
+        return unlockTokenService.ensureLoaded().then(Mono.defer(() -> {
+            UnlockToken token = unlockTokenService.read(cookie.getValue());
+            if (token == null) {
+                return chain.filter(exchange);
+            }
+            UnlockState state = new UnlockState(token);
+            exchange.getResponse().beforeCommit(() -> {
+                if (state.revealed()) {
+                    HttpHeaders headers = exchange.getResponse().getHeaders();
+                    headers.setCacheControl(CacheControl.empty().cachePrivate());
+                    headers.add(HttpHeaders.VARY, HttpHeaders.COOKIE);
+                }
+                return Mono.empty();
+            });
+            return chain.filter(exchange).contextWrite(context -> context.put(UnlockState.class, state));
+        }));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
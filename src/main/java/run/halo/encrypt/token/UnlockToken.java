@@ -0,0 +1,206 @@
+package run.halo.encrypt.token;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * 解锁令牌的内容（未签名部分）
+ * 保存已解锁区块的编号集合、签发时间和过期时间，编码为紧凑的字节序列：
+ *
+ * <pre>
+ * 版本(1) | 密钥编号(1) | 签发时间(varint 秒) | 有效期(varint 秒) | 区块数(varint) | 区块编号差值(varint...)
+ * </pre>
+ *
+ * 区块编号即 blockId 中的 48 位十六进制哈希，升序排列后逐个保存与前一个编号的差值；
+ * 签名和 Base64 编码由 {@link UnlockTokenService} 负责
+ *
+ * @author Developer
+ */
+public final class UnlockToken {
+
+    static final int VERSION = 1;
+
+    private static final String BLOCK_ID_PREFIX = "block-";
+    private static final long BLOCK_NUMBER_MASK = (1L << 48) - 1;
+
+    private final int keyId;
+    private final long issuedAt;
+    private final long expiresAt;
+    private final long[] blocks;
+
+    /**
+     * @param issuedAt  签发时间（秒）
+     * @param expiresAt 过期时间（秒）
+     * @param blocks    区块编号（已升序去重）
+     */
+    private UnlockToken(int keyId, long issuedAt, long expiresAt, long[] blocks) {
+        this.keyId = keyId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.blocks = blocks;
+    }
+
+    /**
+     * 创建令牌（区块编号会被排序去重）
+     */
+    public static UnlockToken of(int keyId, long issuedAt, long expiresAt, long[] blockNumbers) {
+        long[] sorted = Arrays.stream(blockNumbers).sorted().distinct().toArray();
+        return new UnlockToken(keyId, issuedAt, expiresAt, sorted);
+    }
+
+    /**
+     * blockId 对应的区块编号
+     * 确定性 blockId（block- 加十六进制哈希）直接取其数值，其他格式取字符串哈希的低 48 位
+     */
+    public static long blockNumber(String blockId) {
+        if (blockId.startsWith(BLOCK_ID_PREFIX)) {
+            int length = blockId.length() - BLOCK_ID_PREFIX.length();
+            if (length > 0 && length <= 12) {
+                long value = 0;
+                for (int i = BLOCK_ID_PREFIX.length(); i < blockId.length(); i++) {
+                    int digit = Character.digit(blockId.charAt(i), 16);
+                    if (digit < 0) {
+                        value = -1;
+                        break;
+                    }
+                    value = (value << 4) | digit;
+                }
+                if (value >= 0) {
+                    return value;
+                }
+            }
+        }
+        long hash = 1125899906842597L;
+        for (int i = 0; i < blockId.length(); i++) {
+            hash = 31 * hash + blockId.charAt(i);
+        }
+        return hash & BLOCK_NUMBER_MASK;
+    }
+
+    public int keyId() {
+        return keyId;
+    }
+
+    public long issuedAt() {
+        return issuedAt;
+    }
+
+    public long expiresAt() {
+        return expiresAt;
+    }
+
+    public int size() {
+        return blocks.length;
+    }
+
+    public long[] blocks() {
+        return blocks.clone();
+    }
+
+    public boolean isExpired(long nowSeconds) {
+        return nowSeconds >= expiresAt;
+    }
+
+    /**
+     * 是否包含指定区块（二分查找）
+     */
+    public boolean contains(String blockId) {
+        return Arrays.binarySearch(blocks, blockNumber(blockId)) >= 0;
+    }
+
+    /**
+     * 编码为字节序列
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + blocks.length * 7);
+        out.write(VERSION);
+        out.write(keyId);
+        writeVarint(out, issuedAt);
+        writeVarint(out, expiresAt - issuedAt);
+        writeVarint(out, blocks.length);
+        long previous = 0;
+        for (long block : blocks) {
+            writeVarint(out, block - previous);
+            previous = block;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从字节序列解码，格式不正确时返回 null
+     *
+     * @param maxBlocks 允许的最大区块数
+     */
+    public static UnlockToken decode(byte[] data, int maxBlocks) {
+        Reader reader = new Reader(data);
+        if (reader.readByte() != VERSION) {
+            return null;
+        }
+        int keyId = reader.readByte();
+        long issuedAt = reader.readVarint();
+        long lifetime = reader.readVarint();
+        long count = reader.readVarint();
+        if (keyId < 0 || issuedAt < 0 || lifetime < 0 || count < 0 || count > maxBlocks) {
+            return null;
+        }
+        long[] blocks = new long[(int) count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = reader.readVarint();
+            // 编码时已升序去重，除第一个外差值必须为正
+            if (delta < 0 || (i > 0 && delta == 0)) {
+                return null;
+            }
+            previous += delta;
+            blocks[i] = previous;
+        }
+        if (!reader.atEnd()) {
+            return null;
+        }
+        return new UnlockToken(keyId, issuedAt, issuedAt + lifetime, blocks);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * 顺序读取，越界或 varint 超长时返回 -1
+     */
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 63; shift += 7) {
+                int b = readByte();
+                if (b < 0) {
+                    return -1;
+                }
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            return -1;
+        }
+
+        boolean atEnd() {
+            return position == data.length;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package run.halo.encrypt.token;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+/**
+ * 解锁令牌签发与校验
+ * 所有已解锁区块记录在同一个 Cookie 中：{@link UnlockToken} 的字节序列加 HMAC-SHA256 签名（截断为 128 位），
+ * 整体以 Base64URL 编码。校验只需一次 HMAC 计算和一次二分查找，不查询任何存储
+ *
+ * 签名密钥保存在 ConfigMap 中，多个实例共用；当前密钥使用超过轮换周期后生成新密钥，
+ * 旧密钥继续保留用于校验（保留时长远大于令牌有效期），令牌中的密钥编号决定用哪个密钥校验
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnlockTokenService {
+
+    public static final String COOKIE_NAME = "encrypt_unlock";
+
+    // 签名密钥 ConfigMap
+    public static final String KEYS_CONFIG_MAP = "encrypt-unlock-token-keys";
+    private static final String KEYS_DATA_KEY = "keys";
+
+    // 令牌有效期（每次解锁新区块时重新签发并续期）
+    public static final Duration TOKEN_TTL = Duration.ofHours(24);
+
+    // 单个令牌最多记录的区块数（约 2.5 KB，低于 Cookie 的 4 KB 限制）
+    static final int MAX_BLOCKS = 256;
+
+    // 密钥轮换周期与保留个数（当前密钥 + 之前的密钥）
+    static final Duration ROTATION_INTERVAL = Duration.ofDays(7);
+    private static final int MAX_KEYS = 3;
+
+    // 令牌中的密钥编号占 1 字节：已保存的密钥使用 0-127，仅在内存中的临时密钥使用 128-255，
+    // 保存恢复后其他实例（或重启后）签发的令牌不会被误用临时密钥校验
+    private static final int PERSISTED_KEY_ID_MASK = 0x7F;
+    private static final int EPHEMERAL_KEY_ID_BASE = 0x80;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 16;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ReactiveExtensionClient client;
+
+    private final AtomicReference<KeyRing> keyRing = new AtomicReference<>();
+
+    /**
+     * 确保密钥已加载，并在到期时轮换；已加载且未到期时不做 I/O
+     */
+    public Mono<Void> ensureLoaded() {
+        KeyRing ring = keyRing.get();
+        if (ring != null && ring.persisted() && !ring.rotationDue(nowSeconds())) {
+            return Mono.empty();
+        }
+        return loadOrRotate().then();
+    }
+
+    /**
+     * 重新读取密钥（其他实例轮换密钥后由 ConfigMap 变更事件触发）
+     */
+    public Mono<Void> reload() {
+        return client.fetch(ConfigMap.class, KEYS_CONFIG_MAP)
+                .map(UnlockTokenService::readKeys)
+                .filter(keys -> !keys.isEmpty())
+                .doOnNext(keys -> keyRing.set(KeyRing.of(keys, true)))
+                .onErrorResume(e -> {
+                    log.warn("读取解锁令牌密钥失败: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 校验 Cookie 值并判断是否包含指定区块
+     */
+    public boolean contains(String cookieValue, String blockId) {
+        UnlockToken token = read(cookieValue);
+        return token != null && token.contains(blockId);
+    }
+
+    /**
+     * 校验 Cookie 值，签名无效、密钥未知或已过期时返回 null
+     */
+    public UnlockToken read(String cookieValue) {
+        KeyRing ring = keyRing.get();
+        if (ring == null || cookieValue == null || cookieValue.isEmpty()) {
+            return null;
+        }
+        byte[] data;
+        try {
+            data = DECODER.decode(cookieValue);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (data.length <= MAC_BYTES + 1) {
+            return null;
+        }
+        byte[] payload = Arrays.copyOf(data, data.length - MAC_BYTES);
+        byte[] signature = Arrays.copyOfRange(data, data.length - MAC_BYTES, data.length);
+
+        // 密钥编号位于版本号之后
+        SigningKey key = ring.find(payload[1] & 0xFF);
+        if (key == null || !MessageDigest.isEqual(key.sign(payload), signature)) {
+            return null;
+        }
+        UnlockToken token = UnlockToken.decode(payload, MAX_BLOCKS);
+        if (token == null || token.isExpired(nowSeconds())) {
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * 在现有令牌基础上加入新解锁的区块并重新签发
+     * 现有令牌无效时只包含新区块；总数超过上限时重新开始，只保留新区块
+     *
+     * @param existingValue 请求中的令牌 Cookie 值，可为 null
+     * @return 新的 Cookie 值
+     */
+    public String issue(String existingValue, Collection<String> blockIds) {
+        KeyRing ring = keyRing.get();
+        if (ring == null) {
+            throw new IllegalStateException("解锁令牌密钥尚未加载");
+        }
+        long[] added = blockIds.stream().mapToLong(UnlockToken::blockNumber).toArray();
+        long[] blocks = added;
+        UnlockToken existing = read(existingValue);
+        if (existing != null) {
+            long[] merged = Arrays.copyOf(existing.blocks(), existing.size() + added.length);
+            System.arraycopy(added, 0, merged, existing.size(), added.length);
+            if (Arrays.stream(merged).distinct().count() <= MAX_BLOCKS) {
+                blocks = merged;
+            }
+        }
+        if (blocks.length > MAX_BLOCKS) {
+            blocks = Arrays.copyOf(blocks, MAX_BLOCKS);
+        }
+
+        SigningKey key = ring.current();
+        long now = nowSeconds();
+        UnlockToken token = UnlockToken.of(key.id(), now, now + TOKEN_TTL.toSeconds(), blocks);
+        byte[] payload = token.encode();
+        byte[] signature = key.sign(payload);
+        byte[] data = Arrays.copyOf(payload, payload.length + MAC_BYTES);
+        System.arraycopy(signature, 0, data, payload.length, MAC_BYTES);
+        return ENCODER.encodeToString(data);
+    }
+
+    /**
+     * 读取密钥，不存在或当前密钥已到轮换时间时生成新密钥并保存
+     * 保存失败时使用仅在内存中的密钥（重启后已签发的令牌失效），下次请求时重试
+     */
+    private Mono<KeyRing> loadOrRotate() {
+        return Mono.defer(() -> client.fetch(ConfigMap.class, KEYS_CONFIG_MAP)
+                        .flatMap(configMap -> {
+                            List<StoredKey> keys = readKeys(configMap);
+                            if (!keys.isEmpty() && !rotationDue(keys.get(0), nowSeconds())) {
+                                return Mono.just(keys);
+                            }
+                            List<StoredKey> rotated = rotate(keys);
+                            writeKeys(configMap, rotated);
+                            return client.update(configMap).thenReturn(rotated);
+                        })
+                        .switchIfEmpty(Mono.defer(() -> {
+                            List<StoredKey> keys = rotate(List.of());
+                            ConfigMap configMap = new ConfigMap();
+                            configMap.setMetadata(new Metadata());
+                            configMap.getMetadata().setName(KEYS_CONFIG_MAP);
+                            writeKeys(configMap, keys);
+                            return client.create(configMap).thenReturn(keys);
+                        })))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance))
+                .map(keys -> {
+                    KeyRing ring = KeyRing.of(keys, true);
+                    keyRing.set(ring);
+                    return ring;
+                })
+                .onErrorResume(e -> {
+                    log.warn("保存解锁令牌密钥失败，暂时使用内存中的密钥: {}", e.getMessage());
+                    KeyRing ring = keyRing.get();
+                    if (ring == null) {
+                        ring = KeyRing.of(List.of(ephemeralKey()), false);
+                        keyRing.compareAndSet(null, ring);
+                    }
+                    return Mono.just(keyRing.get());
+                });
+    }
+
+    /**
+     * 生成新密钥放在首位，保留最近的旧密钥
+     */
+    private static List<StoredKey> rotate(List<StoredKey> keys) {
+        int id = keys.isEmpty() ? 0 : (keys.get(0).id() + 1) & PERSISTED_KEY_ID_MASK;
+        List<StoredKey> rotated = new ArrayList<>(MAX_KEYS);
+        rotated.add(newKey(id));
+        for (int i = 0; i < keys.size() && rotated.size() < MAX_KEYS; i++) {
+            rotated.add(keys.get(i));
+        }
+        if (!keys.isEmpty()) {
+            log.info("解锁令牌签名密钥已轮换 - 新密钥编号: {}", id);
+        }
+        return rotated;
+    }
+
+    /**
+     * 保存失败时使用的临时密钥，编号在临时范围内随机选取（多个实例同时退回时也不易重复）
+     */
+    private static StoredKey ephemeralKey() {
+        return newKey(EPHEMERAL_KEY_ID_BASE + RANDOM.nextInt(EPHEMERAL_KEY_ID_BASE));
+    }
+
+    private static StoredKey newKey(int id) {
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        return new StoredKey(id, Base64.getEncoder().encodeToString(secret), nowSeconds());
+    }
+
+    private static boolean rotationDue(StoredKey key, long now) {
+        return now - key.createdAt() >= ROTATION_INTERVAL.toSeconds();
+    }
+
+    private static List<StoredKey> readKeys(ConfigMap configMap) {
+        Map<String, String> data = configMap.getData();
+        String json = data != null ? data.get(KEYS_DATA_KEY) : null;
+        if (json == null || json.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return OBJECT_MAPPER.readValue(json, new TypeReference<List<StoredKey>>() {
+            });
+        } catch (Exception e) {
+            log.warn("解析解锁令牌密钥失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static void writeKeys(ConfigMap configMap, List<StoredKey> keys) {
+        Map<String, String> data = configMap.getData();
+        if (data == null) {
+            data = new HashMap<>();
+            configMap.setData(data);
+        }
+        try {
+            data.put(KEYS_DATA_KEY, OBJECT_MAPPER.writeValueAsString(keys));
+        } catch (Exception e) {
+            throw new IllegalStateException("序列化解锁令牌密钥失败", e);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * 持久化的密钥
+     *
+     * @param secret    Base64 编码的 256 位密钥
+     * @param createdAt 生成时间（秒）
+     */
+    public record StoredKey(int id, String secret, long createdAt) {
+    }
+
+    /**
+     * 签名密钥（每个线程复用一个 Mac 实例）
+     */
+    private record SigningKey(int id, long createdAt, ThreadLocal<Mac> macs) {
+
+        static SigningKey of(StoredKey stored) {
+            SecretKeySpec spec = new SecretKeySpec(Base64.getDecoder().decode(stored.secret()), HMAC_ALGORITHM);
+            return new SigningKey(stored.id(), stored.createdAt(), ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                    mac.init(spec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("HMAC-SHA256 不可用", e);
+                }
+            }));
+        }
+
+        byte[] sign(byte[] payload) {
+            return Arrays.copyOf(macs.get().doFinal(payload), MAC_BYTES);
+        }
+    }
+
+    /**
+     * 当前可用的密钥，第一个为签发用的当前密钥
+     *
+     * @param persisted 密钥是否已保存（未保存时下次请求会重试）
+     */
+    private record KeyRing(List<SigningKey> keys, boolean persisted) {
+
+        static KeyRing of(List<StoredKey> stored, boolean persisted) {
+            return new KeyRing(stored.stream().map(SigningKey::of).toList(), persisted);
+        }
+
+        SigningKey current() {
+            return keys.get(0);
+        }
+
+        SigningKey find(int id) {
+            for (SigningKey key : keys) {
+                if (key.id() == id) {
+                    return key;
+                }
+            }
+            return null;
+        }
+
+        boolean rotationDue(long now) {
+            return now - current().createdAt() >= ROTATION_INTERVAL.toSeconds();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package run.halo.encrypt.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 可选压缩的文本
+ * 超过阈值的文本以 deflate 压缩后的 UTF-8 字节保存，只在读取时解压；
+ * 压缩后没有明显收益时保持原样
+ *
+ * @author Developer
+ */
+public final class CompressedText {
+
+    private final String text;
+    private final byte[] deflated;
+    private final int utf8Length;
+    private final int length;
+
+    private CompressedText(String text, byte[] deflated, int utf8Length, int length) {
+        this.text = text;
+        this.deflated = deflated;
+        this.utf8Length = utf8Length;
+        this.length = length;
+    }
+
+    /**
+     * 不压缩
+     */
+    public static CompressedText plain(String text) {
+        return new CompressedText(text, null, 0, text.length());
+    }
+
+    /**
+     * 长度达到阈值时按指定级别压缩
+     *
+     * @param threshold 压缩阈值（字符数）
+     * @param level     压缩级别（1~9）
+     */
+    public static CompressedText of(String text, int threshold, int level) {
+        if (text.length() < threshold) {
+            return plain(text);
+        }
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, utf8.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            byte[] deflated = out.toByteArray();
+            // 字符串在堆上按 UTF-16 计，压缩后连一半都省不下时不值得解压开销
+            if (deflated.length >= text.length()) {
+                return plain(text);
+            }
+            return new CompressedText(null, deflated, utf8.length, text.length());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 获取原文（压缩时解压）
+     */
+    public String text() {
+        if (deflated == null) {
+            return text;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] utf8 = new byte[utf8Length];
+            int offset = 0;
+            while (offset < utf8Length && !inflater.finished()) {
+                int n = inflater.inflate(utf8, offset, utf8Length - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            return new String(utf8, 0, offset, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("解压内容失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 原文字符数
+     */
+    public int length() {
+        return length;
+    }
+
+    public boolean isCompressed() {
+        return deflated != null;
+    }
+
+    /**
+     * 估算堆上占用的字节数
+     */
+    public long heapBytes() {
+        return deflated != null ? deflated.length : 2L * length;
+    }
+}
@@ -0,0 +1,45 @@
+package run.halo.encrypt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 内容指纹（SHA-256）
+ * 用于判断内容是否变化（文章处理缓存区分已发布内容与预览内容、同一 blockId 的区块内容或展示属性是否变化）：
+ * 比较 32 字节摘要，无需保留或解压原内容，也无法像 String.hashCode 那样轻易构造碰撞
+ *
+ * 各字段以长度前缀编码后再计算摘要（null 与空字符串不同），字段内容中的任何字符都不会造成歧义
+ *
+ * @author Developer
+ */
+public record ContentFingerprint(long a, long b, long c, long d) {
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    });
+
+    /**
+     * 计算多个字段的指纹
+     */
+    public static ContentFingerprint of(String... parts) {
+        MessageDigest digest = DIGESTS.get();
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (String part : parts) {
+            byte[] bytes = part != null ? part.getBytes(StandardCharsets.UTF_8) : null;
+            length.clear();
+            length.putInt(bytes != null ? bytes.length : -1);
+            digest.update(length.array());
+            if (bytes != null) {
+                digest.update(bytes);
+            }
+        }
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new ContentFingerprint(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+}
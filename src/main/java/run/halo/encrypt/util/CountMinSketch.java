@@ -0,0 +1,102 @@
+package run.halo.encrypt.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min 计数草图
+ * 用固定大小的计数器矩阵估算任意多个键的计数，估计值只会偏大不会偏小；
+ * 内存占用只取决于宽度和深度，与键的数量无关
+ *
+ * 计数器可并发更新；{@link #decay()} 将所有计数减半，用于让旧的计数逐渐失效
+ *
+ * @author Developer
+ */
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int depth;
+    private final int widthMask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param width 每行计数器数（向上取整为 2 的幂）
+     * @param depth 行数（哈希函数个数，最多 8）
+     */
+    public CountMinSketch(int width, int depth) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        }
+        int w = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.widthMask = w - 1;
+        this.counters = new AtomicIntegerArray(w * depth);
+    }
+
+    /**
+     * 计数加一，返回加一后的估计值
+     */
+    public int add(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int value = counters.incrementAndGet(index(row, key));
+            if (value < min) {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 估计值（不小于真实计数）
+     */
+    public int estimate(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int value = counters.get(index(row, key));
+            if (value < min) {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数减半（与并发的 add 交错时可能少减或多保留一次计数，对估计无实质影响）
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            int value = counters.get(i);
+            if (value != 0) {
+                counters.set(i, value >>> 1);
+            }
+        }
+    }
+
+    /**
+     * 占用的计数器字节数
+     */
+    public long sizeInBytes() {
+        return 4L * counters.length();
+    }
+
+    /**
+     * 组合两个 long 为一个键（用于 128 位 IP）
+     */
+    public static long key(long high, long low) {
+        return mix(high ^ SEEDS[7]) ^ low;
+    }
+
+    private int index(int row, long key) {
+        return row * (widthMask + 1) + (int) (mix(key ^ SEEDS[row]) & widthMask);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,179 @@
+package run.halo.encrypt.util;
+
+/**
+ * 摘要清理工具
+ * 扫描摘要，将完整的 [encrypt]...[/encrypt] 区块和残留的开始标签替换为加密提示，
+ * 删除残留的结束标签，再删除 password="..." 属性；无需清理时直接返回原字符串，不产生任何分配
+ * 标签和属性都区分大小写，输出与原先依次执行的正则替换一致
+ *
+ * 渲染路径（EncryptContentProcessor）和发布监听器（UnifiedExcerptProtectionListener）共用，
+ * 保证两处对加密标签的识别一致
+ *
+ * @author Developer
+ */
+public final class ExcerptSanitizer {
+
+    /**
+     * 替换加密区块的提示文本
+     */
+    public static final String ENCRYPTED_PLACEHOLDER = "🔒 [加密内容]";
+
+    /**
+     * 已保护摘要的前缀
+     */
+    public static final String LOCK_PREFIX = "🔒";
+
+    private static final String OPEN_TAG = "[encrypt";
+    private static final String CLOSE_TAG = "[/encrypt]";
+    private static final String PASSWORD_ATTR = "password";
+
+    private ExcerptSanitizer() {
+    }
+
+    /**
+     * 是否包含加密标签（开始或结束标签，区分大小写，与 {@link #sanitize(String)} 的识别规则一致）
+     */
+    public static boolean containsEncryptTag(String text) {
+        return text != null && (text.contains(OPEN_TAG) || text.contains(CLOSE_TAG));
+    }
+
+    /**
+     * 是否包含完整的开始标签（忽略大小写），发布时判断文章是否部分加密
+     */
+    public static boolean containsOpenTagIgnoreCase(String text) {
+        if (text == null) {
+            return false;
+        }
+        int i = text.indexOf('[');
+        while (i >= 0) {
+            if (text.regionMatches(true, i, OPEN_TAG, 0, OPEN_TAG.length())
+                    && text.indexOf(']', i + OPEN_TAG.length()) >= 0) {
+                return true;
+            }
+            i = text.indexOf('[', i + 1);
+        }
+        return false;
+    }
+
+    /**
+     * 清理摘要中的加密区块、残留标签和密码属性
+     *
+     * @return 清理后的摘要；无需清理时返回原字符串
+     */
+    public static String sanitize(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        // 删除结束标签可能使前后文字拼成密码属性，因此与原先一样在标签清理之后再删除密码属性
+        return stripPasswords(stripTags(text));
+    }
+
+    /**
+     * 替换加密区块和残留的开始标签，删除残留的结束标签
+     */
+    private static String stripTags(String text) {
+        int length = text.length();
+        StringBuilder sb = null;
+        int copyFrom = 0;
+        int i = text.indexOf('[');
+
+        while (i >= 0) {
+            int end = -1;
+            String replacement = null;
+            if (text.startsWith(OPEN_TAG, i)) {
+                int tagEnd = text.indexOf(']', i + OPEN_TAG.length());
+                if (tagEnd >= 0) {
+                    // 完整区块替换为提示，被截断的区块只替换开始标签
+                    int close = text.indexOf(CLOSE_TAG, tagEnd + 1);
+                    end = close >= 0 ? close + CLOSE_TAG.length() : tagEnd + 1;
+                    replacement = ENCRYPTED_PLACEHOLDER;
+                }
+            } else if (text.startsWith(CLOSE_TAG, i)) {
+                end = i + CLOSE_TAG.length();
+                replacement = "";
+            }
+
+            if (end < 0) {
+                i = text.indexOf('[', i + 1);
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(length);
+            }
+            sb.append(text, copyFrom, i).append(replacement);
+            copyFrom = end;
+            i = text.indexOf('[', end);
+        }
+
+        if (sb == null) {
+            return text;
+        }
+        sb.append(text, copyFrom, length);
+        return sb.toString();
+    }
+
+    /**
+     * 删除 password="..." 属性
+     */
+    private static String stripPasswords(String text) {
+        int length = text.length();
+        StringBuilder sb = null;
+        int copyFrom = 0;
+        int i = text.indexOf(PASSWORD_ATTR);
+
+        while (i >= 0) {
+            int end = passwordAttributeEnd(text, i);
+            if (end < 0) {
+                i = text.indexOf(PASSWORD_ATTR, i + 1);
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(length);
+            }
+            sb.append(text, copyFrom, i);
+            copyFrom = end;
+            i = text.indexOf(PASSWORD_ATTR, end);
+        }
+
+        if (sb == null) {
+            return text;
+        }
+        sb.append(text, copyFrom, length);
+        return sb.toString();
+    }
+
+    /**
+     * 匹配 password\s*=\s*["'][^"']*["']，返回结束位置，不匹配时返回 -1
+     */
+    private static int passwordAttributeEnd(String text, int from) {
+        if (!text.startsWith(PASSWORD_ATTR, from)) {
+            return -1;
+        }
+        int length = text.length();
+        int i = skipWhitespace(text, from + PASSWORD_ATTR.length());
+        if (i >= length || text.charAt(i) != '=') {
+            return -1;
+        }
+        i = skipWhitespace(text, i + 1);
+        if (i >= length || !isQuote(text.charAt(i))) {
+            return -1;
+        }
+        i++;
+        while (i < length && !isQuote(text.charAt(i))) {
+            i++;
+        }
+        return i < length ? i + 1 : -1;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+}
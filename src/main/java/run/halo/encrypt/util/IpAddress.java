@@ -0,0 +1,163 @@
+package run.halo.encrypt.util;
+
+/**
+ * 紧凑的 IP 地址表示（128 位，拆成两个 long）
+ * IPv4 按 IPv4-mapped IPv6（::ffff:a.b.c.d）保存；无法解析的字符串（如 "unknown"）
+ * 以其哈希值放入一个保留区间，仍可作为键使用
+ *
+ * 解析只处理字面量，不做任何 DNS 查询
+ *
+ * @author Developer
+ */
+public record IpAddress(long high, long low) {
+
+    private static final long V4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    // 无法解析的地址使用的高位标记（不是合法的单播地址前缀）
+    private static final long UNPARSED_MARKER = 0xFFFF_FFFF_0000_0000L;
+
+    /**
+     * 解析 IP 字面量，失败时返回基于字符串哈希的占位地址
+     */
+    public static IpAddress parse(String text) {
+        if (text != null) {
+            String trimmed = text.trim();
+            if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                trimmed = trimmed.substring(1, trimmed.length() - 1);
+            }
+            int zone = trimmed.indexOf('%');
+            if (zone >= 0) {
+                trimmed = trimmed.substring(0, zone);
+            }
+            IpAddress parsed = trimmed.indexOf(':') >= 0 ? parseV6(trimmed) : parseV4(trimmed);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        return new IpAddress(UNPARSED_MARKER, text == null ? 0 : text.hashCode());
+    }
+
+    public boolean isV4() {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == V4_MAPPED_PREFIX;
+    }
+
+    /**
+     * 所在网段：IPv4 取 /24，IPv6 取 /64
+     */
+    public IpAddress prefix() {
+        if (isV4()) {
+            return new IpAddress(high, low & 0xFFFF_FFFF_FFFF_FF00L);
+        }
+        if (high == UNPARSED_MARKER) {
+            return this;
+        }
+        return new IpAddress(high, 0);
+    }
+
+    private static IpAddress parseV4(String text) {
+        long value = parseV4Value(text);
+        return value < 0 ? null : new IpAddress(0, V4_MAPPED_PREFIX | value);
+    }
+
+    /**
+     * 解析点分十进制，返回 32 位无符号值，失败时返回 -1
+     */
+    private static long parseV4Value(String text) {
+        long value = 0;
+        int octets = 0;
+        int current = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : '.';
+            if (c == '.') {
+                if (current < 0 || ++octets > 4) {
+                    return -1;
+                }
+                value = (value << 8) | current;
+                current = -1;
+            } else if (c >= '0' && c <= '9') {
+                current = (current < 0 ? 0 : current * 10) + (c - '0');
+                if (current > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static IpAddress parseV6(String text) {
+        int[] groups = new int[8];
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+        int length = text.length();
+
+        if (text.startsWith("::")) {
+            gap = 0;
+            i = 2;
+        }
+        while (i < length) {
+            int end = text.indexOf(':', i);
+            if (end < 0) {
+                end = length;
+            }
+            String part = text.substring(i, end);
+            if (part.indexOf('.') >= 0) {
+                // 末尾的内嵌 IPv4（如 ::ffff:1.2.3.4）
+                long v4 = end == length ? parseV4Value(part) : -1;
+                if (v4 < 0 || count > 6) {
+                    return null;
+                }
+                groups[count++] = (int) (v4 >>> 16);
+                groups[count++] = (int) (v4 & 0xFFFF);
+                i = length;
+                break;
+            }
+            if (part.isEmpty() || part.length() > 4 || count >= 8) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                int digit = Character.digit(part.charAt(j), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = (value << 4) | digit;
+            }
+            groups[count++] = value;
+            i = end + 1;
+            if (end + 1 < length && text.charAt(end + 1) == ':') {
+                if (gap >= 0) {
+                    return null;
+                }
+                gap = count;
+                i = end + 2;
+            } else if (end + 1 == length && end < length) {
+                // 以单个 ':' 结尾
+                return null;
+            }
+        }
+
+        if (gap >= 0) {
+            int missing = 8 - count;
+            if (missing < 1 && !(missing == 0 && gap == count)) {
+                return null;
+            }
+            System.arraycopy(groups, gap, groups, gap + missing, count - gap);
+            for (int k = gap; k < gap + missing; k++) {
+                groups[k] = 0;
+            }
+        } else if (count != 8) {
+            return null;
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int k = 0; k < 4; k++) {
+            high = (high << 16) | groups[k];
+            low = (low << 16) | groups[k + 4];
+        }
+        return new IpAddress(high, low);
+    }
+}
@@ -0,0 +1,62 @@
+package run.halo.encrypt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 进程内随机密钥下的 HMAC-SHA256 摘要
+ * 用于以密码等敏感输入作为内存中的查找键：摘要不可逆，且密钥不落盘，重启后全部失效
+ *
+ * 每个线程复用一个 Mac 实例
+ *
+ * @author Developer
+ */
+public class KeyedDigest {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    public KeyedDigest() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 计算多个字段的摘要（字段之间以 0 字节分隔）
+     */
+    public Digest digest(String... parts) {
+        Mac mac = macs.get();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                mac.update((byte) 0);
+            }
+            mac.update(parts[i].getBytes(StandardCharsets.UTF_8));
+        }
+        ByteBuffer hash = ByteBuffer.wrap(mac.doFinal());
+        return new Digest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 不可用", e);
+        }
+    }
+
+    /**
+     * 256 位摘要
+     */
+    public record Digest(long a, long b, long c, long d) {
+    }
+}
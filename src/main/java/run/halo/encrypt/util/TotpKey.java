@@ -0,0 +1,100 @@
+package run.halo.encrypt.util;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.codec.binary.Base32;
+
+/**
+ * 已解码的 TOTP 密钥
+ * 密钥只在创建时做一次 Base32 解码，每个线程持有一个已用该密钥初始化的 Mac 和计数器缓冲区，
+ * 计算动态码时不再查找算法提供者、创建 SecretKeySpec 或分配缓冲区
+ *
+ * 实例不可变，可在线程间共享；按密钥缓存见 {@link run.halo.encrypt.verify.TotpKeyCache}
+ *
+ * @author Developer
+ */
+public final class TotpKey {
+
+    private static final Base32 BASE32 = new Base32();
+    private static final String HMAC_ALGORITHM = "HmacSHA1";
+
+    // 6 位动态码的模数
+    private static final int CODE_MODULUS = 1_000_000;
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> states;
+
+    private TotpKey(byte[] keyBytes) {
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.states = ThreadLocal.withInitial(this::newState);
+    }
+
+    /**
+     * 解码 Base32 密钥
+     *
+     * @throws IllegalArgumentException 密钥为空或解码后为空
+     */
+    public static TotpKey of(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("TOTP 密钥为空");
+        }
+        byte[] keyBytes = BASE32.decode(secret);
+        if (keyBytes.length == 0) {
+            throw new IllegalArgumentException("TOTP 密钥格式不正确");
+        }
+        return new TotpKey(keyBytes);
+    }
+
+    /**
+     * 计算指定计数器的动态码数值（0 ~ 999999）
+     */
+    public int generateCode(long counter) {
+        State state = states.get();
+        byte[] data = state.counter;
+        for (int i = 7; i >= 0; i--) {
+            data[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        byte[] hash = state.mac.doFinal(data);
+
+        // 动态截取
+        int offset = hash[hash.length - 1] & 0x0F;
+        int binary = ((hash[offset] & 0x7F) << 24)
+                | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8)
+                | (hash[offset + 3] & 0xFF);
+        return binary % CODE_MODULUS;
+    }
+
+    /**
+     * 验证动态码是否与 counter 前后 window 个周期内的任一码一致（跳过负数计数器）
+     */
+    public boolean verify(int code, long counter, int window) {
+        if (code < 0 || code >= CODE_MODULUS) {
+            return false;
+        }
+        for (long c = Math.max(0, counter - window); c <= counter + window; c++) {
+            if (generateCode(c) == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private State newState() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return new State(mac, new byte[8]);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 不可用", e);
+        }
+    }
+
+    /**
+     * 线程私有的 Mac（doFinal 后自动重置，可直接复用）和计数器缓冲区
+     */
+    private record State(Mac mac, byte[] counter) {
+    }
+}
@@ -1,8 +1,5 @@
 package run.halo.encrypt.util;
 
-import java.nio.ByteBuffer;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -10,8 +7,6 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base32;
@@ -19,7 +14,9 @@ import org.apache.commons.codec.binary.Base32;
 /**
  * TOTP 动态密码工具类
  * 支持可配置的有效期：30秒/1小时/1天/1周/1月
- * 
+ * 频繁计算的场景应通过 {@link TotpKey} 重载使用已解码的密钥，以密钥字符串为参数的方法每次都会重新解码
+ * 动态码在内部一律以 int 数值表示（失败为 -1），只在展示时由 {@link #formatCode(int)} 补零格式化
+ *
  * @author Developer
  */
 @Slf4j
@@ -27,7 +24,7 @@ public class TotpUtils {
 
     private static final Base32 BASE32 = new Base32();
     private static final int CODE_DIGITS = 6;
-    private static final String HMAC_ALGORITHM = "HmacSHA1";
+    private static final int CODE_MODULUS = 1_000_000;
 
     /**
      * 密码有效期枚举
@@ -62,23 +59,58 @@ public class TotpUtils {
     }
 
     /**
-     * 获取当前有效的 TOTP 密码
+     * 获取当前有效的 TOTP 码数值（失败时返回 -1）
      */
-    public static String getCurrentCode(String secret, ValidityPeriod period) {
+    public static int getCurrentCode(String secret, ValidityPeriod period) {
         long counter = getCounter(period, Instant.now());
-        return generateCode(secret, counter);
+        return generateOtp(secret, counter);
     }
 
     /**
-     * 验证 TOTP 密码（允许容错窗口）
+     * 解析 6 位数字动态码，格式不正确时返回 -1
      */
-    public static boolean verifyCode(String secret, String inputCode, ValidityPeriod period) {
-        if (secret == null || inputCode == null || inputCode.length() != CODE_DIGITS) {
-            return false;
+    public static int parseCode(String input) {
+        if (input == null || input.length() != CODE_DIGITS) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < CODE_DIGITS; i++) {
+            int digit = input.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            code = code * 10 + digit;
         }
+        return code;
+    }
 
-        // 只验证数字
-        if (!inputCode.matches("\\d{6}")) {
+    /**
+     * 是否为动态密码格式（6 位数字）
+     */
+    public static boolean isCodeFormat(String input) {
+        return parseCode(input) >= 0;
+    }
+
+    /**
+     * 动态码数值格式化为 6 位数字（仅用于展示，无效值显示为 000000）
+     */
+    public static String formatCode(int code) {
+        char[] digits = new char[CODE_DIGITS];
+        int value = code >= 0 && code < CODE_MODULUS ? code : 0;
+        for (int i = CODE_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * 验证 TOTP 密码（允许容错窗口）
+     *
+     * @param code 已解析的动态码数值（见 {@link #parseCode(String)}）
+     */
+    public static boolean verifyCode(String secret, int code, ValidityPeriod period) {
+        if (secret == null || code < 0) {
             return false;
         }
 
@@ -88,13 +120,13 @@ public class TotpUtils {
         // 对于长周期（1天+），只验证当前窗口
         int tolerance = period.getSeconds() <= 3600 ? 1 : 0;
 
-        for (int i = -tolerance; i <= tolerance; i++) {
-            String expectedCode = generateCode(secret, currentCounter + i);
-            if (expectedCode.equals(inputCode)) {
-                return true;
-            }
+        try {
+            // 只解码一次密钥，各容错窗口复用
+            return TotpKey.of(secret).verify(code, currentCounter, tolerance);
+        } catch (RuntimeException e) {
+            log.error("TOTP 验证失败", e);
+            return false;
         }
-        return false;
     }
 
     /**
@@ -231,72 +263,103 @@ public class TotpUtils {
     }
 
     /**
-     * 生成 TOTP 码
+     * 生成 TOTP 码的数值（失败时返回 -1）
      */
-    private static String generateCode(String secret, long counter) {
+    private static int generateOtp(String secret, long counter) {
         try {
-            byte[] key = BASE32.decode(secret);
-            byte[] data = ByteBuffer.allocate(8).putLong(counter).array();
-
-            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
-            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
-            byte[] hash = mac.doFinal(data);
-
-            // 动态截取
-            int offset = hash[hash.length - 1] & 0x0F;
-            int binary = ((hash[offset] & 0x7F) << 24)
-                    | ((hash[offset + 1] & 0xFF) << 16)
-                    | ((hash[offset + 2] & 0xFF) << 8)
-                    | (hash[offset + 3] & 0xFF);
-
-            int otp = binary % (int) Math.pow(10, CODE_DIGITS);
-            return String.format("%0" + CODE_DIGITS + "d", otp);
-
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            return TotpKey.of(secret).generateCode(counter);
+        } catch (RuntimeException e) {
             log.error("TOTP 生成失败", e);
-            return "000000";
+            return -1;
         }
     }
 
     // ========== 新增：基于创建时间的方法 ==========
 
     /**
-     * 获取基于创建时间的当前 TOTP 密码
+     * 获取基于创建时间的当前 TOTP 码数值（失败时返回 -1）
      * 
      * @param secret       密钥
      * @param createdAt    创建时间
      * @param durationDays 周期天数
      */
-    public static String getCodeByCreationTime(String secret, LocalDateTime createdAt, int durationDays) {
-        long counter = getCounterByCreationTime(createdAt, durationDays);
-        return generateCode(secret, counter);
+    public static int getCodeByCreationTime(String secret, LocalDateTime createdAt, int durationDays) {
+        return getCodeValueByCreationTime(secret, createdAt, durationDays, 0);
+    }
+
+    /**
+     * 获取基于创建时间的当前 TOTP 码数值（已解码密钥，密钥为 null 时返回 -1）
+     */
+    public static int getCodeByCreationTime(TotpKey key, LocalDateTime createdAt, int durationDays) {
+        return getCodeValueByCreationTime(key, createdAt, durationDays, 0);
+    }
+
+    /**
+     * 获取基于创建时间、相对当前周期偏移 windowOffset 个周期的 TOTP 码数值
+     * 偏移后的周期早于创建时间或生成失败时返回 -1
+     */
+    public static int getCodeValueByCreationTime(String secret, LocalDateTime createdAt, int durationDays,
+            int windowOffset) {
+        long counter = getCounterByCreationTime(createdAt, durationDays) + windowOffset;
+        if (secret == null || counter < 0) {
+            return -1;
+        }
+        return generateOtp(secret, counter);
+    }
+
+    /**
+     * 同 {@link #getCodeValueByCreationTime(String, LocalDateTime, int, int)}，使用已解码的密钥
+     */
+    public static int getCodeValueByCreationTime(TotpKey key, LocalDateTime createdAt, int durationDays,
+            int windowOffset) {
+        long counter = getCounterByCreationTime(createdAt, durationDays) + windowOffset;
+        if (key == null || counter < 0) {
+            return -1;
+        }
+        return key.generateCode(counter);
     }
 
     /**
      * 验证基于创建时间的 TOTP 密码
+     *
+     * @param code 已解析的动态码数值（见 {@link #parseCode(String)}）
      */
-    public static boolean verifyCodeByCreationTime(String secret, String inputCode,
+    public static boolean verifyCodeByCreationTime(String secret, int code,
             LocalDateTime createdAt, int durationDays) {
-        if (secret == null || inputCode == null || inputCode.length() != CODE_DIGITS) {
+        if (secret == null || code < 0) {
             return false;
         }
-        if (!inputCode.matches("\\d{6}")) {
+
+        long currentCounter = getCounterByCreationTime(createdAt, durationDays);
+        return generateOtp(secret, currentCounter) == code;
+    }
+
+    /**
+     * 验证基于创建时间的 TOTP 密码（已解码密钥，只验证当前周期）
+     */
+    public static boolean verifyCodeByCreationTime(TotpKey key, int code,
+            LocalDateTime createdAt, int durationDays) {
+        if (key == null || code < 0) {
             return false;
         }
-
         long currentCounter = getCounterByCreationTime(createdAt, durationDays);
-        String expectedCode = generateCode(secret, currentCounter);
-        return expectedCode.equals(inputCode);
+        return key.verify(code, currentCounter, 0);
     }
 
     /**
      * 计算基于创建时间的周期编号
      */
     private static long getCounterByCreationTime(LocalDateTime createdAt, int durationDays) {
+        return getCounterByCreationTime(createdAt, durationDays, LocalDateTime.now());
+    }
+
+    /**
+     * 计算基于创建时间、在指定时刻的周期编号
+     */
+    public static long getCounterByCreationTime(LocalDateTime createdAt, int durationDays, LocalDateTime now) {
         if (createdAt == null) {
             return 0;
         }
-        LocalDateTime now = LocalDateTime.now();
         long daysPassed = java.time.Duration.between(createdAt, now).toDays();
         // 确保不会出现负数
         if (daysPassed < 0) {
@@ -309,10 +372,18 @@ public class TotpUtils {
      * 获取基于创建时间的过期时间
      */
     public static LocalDateTime getExpirationTimeByCreation(LocalDateTime createdAt, int durationDays) {
+        return getExpirationTimeByCreation(createdAt, durationDays, LocalDateTime.now());
+    }
+
+    /**
+     * 获取基于创建时间、在指定时刻所处周期的过期时间
+     */
+    public static LocalDateTime getExpirationTimeByCreation(LocalDateTime createdAt, int durationDays,
+            LocalDateTime now) {
         if (createdAt == null) {
-            return LocalDateTime.now().plusDays(durationDays);
+            return now.plusDays(durationDays);
         }
-        long period = getCounterByCreationTime(createdAt, durationDays);
+        long period = getCounterByCreationTime(createdAt, durationDays, now);
         return createdAt.plusDays((period + 1) * durationDays);
     }
 
@@ -320,14 +391,19 @@ public class TotpUtils {
      * 获取基于创建时间的剩余时间描述
      */
     public static String getRemainingByCreation(LocalDateTime createdAt, int durationDays) {
-        LocalDateTime expiration = getExpirationTimeByCreation(createdAt, durationDays);
         LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiration = getExpirationTimeByCreation(createdAt, durationDays, now);
+        return formatRemaining(java.time.Duration.between(now, expiration));
+    }
 
-        if (now.isAfter(expiration)) {
+    /**
+     * 剩余时间描述（已过期时为"即将更换"）
+     */
+    public static String formatRemaining(java.time.Duration remaining) {
+        if (remaining.isNegative()) {
             return "即将更换";
         }
 
-        java.time.Duration remaining = java.time.Duration.between(now, expiration);
         long days = remaining.toDays();
         long hours = remaining.toHours() % 24;
         long minutes = remaining.toMinutes() % 60;
@@ -0,0 +1,107 @@
+package run.halo.encrypt.verify;
+
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.util.CountMinSketch;
+import run.halo.encrypt.util.IpAddress;
+
+/**
+ * 近似失败计数（第二层锁定）
+ * 在精确的（IP，区块）锁定之前，用 Count-Min 草图按 IP、网段（IPv4 /24、IPv6 /64）和区块
+ * 分别估算失败次数；任一维度超过阈值即拒绝尝试，不再进行任何 HMAC 或 BCrypt 计算
+ *
+ * 计数每分钟减半，持续的失败速率约为阈值的一半时开始限流，停止攻击后数分钟内自然恢复；
+ * 三个草图共占用约 768 KB，与攻击者使用的 IP 数量无关
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class AttemptThrottle {
+
+    // 草图尺寸：4 行 × 16384 列
+    private static final int SKETCH_WIDTH = 16384;
+    private static final int SKETCH_DEPTH = 4;
+
+    // 衰减周期
+    static final long DECAY_INTERVAL_MILLIS = 60_000;
+
+    // 各维度阈值（衰减后的估计失败次数）
+    static final int IP_THRESHOLD = 30;
+    static final int PREFIX_THRESHOLD = 120;
+    static final int BLOCK_THRESHOLD = 300;
+
+    private final CountMinSketch byIp = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+    private final CountMinSketch byPrefix = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+    private final CountMinSketch byBlock = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+
+    private final AtomicLong nextDecay = new AtomicLong(System.currentTimeMillis() + DECAY_INTERVAL_MILLIS);
+
+    /**
+     * 判断是否应限流
+     *
+     * @return 被限流的维度（ip / prefix / block），未限流时返回 null
+     */
+    public String check(String clientIp, String blockId) {
+        decayIfDue();
+        IpAddress ip = IpAddress.parse(clientIp);
+        if (byIp.estimate(ipKey(ip)) >= IP_THRESHOLD) {
+            return "ip";
+        }
+        if (byPrefix.estimate(ipKey(ip.prefix())) >= PREFIX_THRESHOLD) {
+            return "prefix";
+        }
+        if (byBlock.estimate(blockKey(blockId)) >= BLOCK_THRESHOLD) {
+            return "block";
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次失败
+     */
+    public void recordFailure(String clientIp, String blockId) {
+        IpAddress ip = IpAddress.parse(clientIp);
+        byIp.add(ipKey(ip));
+        byPrefix.add(ipKey(ip.prefix()));
+        int blockFailures = byBlock.add(blockKey(blockId));
+        if (blockFailures == BLOCK_THRESHOLD) {
+            log.warn("区块失败次数过多，已暂时限流 - blockId: {}", blockId);
+        }
+    }
+
+    /**
+     * 距下次衰减的毫秒数（用于提示重试时间）
+     */
+    public long millisUntilDecay() {
+        return Math.max(0, nextDecay.get() - System.currentTimeMillis());
+    }
+
+    private void decayIfDue() {
+        long due = nextDecay.get();
+        long now = System.currentTimeMillis();
+        if (now < due || !nextDecay.compareAndSet(due, now + DECAY_INTERVAL_MILLIS)) {
+            return;
+        }
+        // 长时间无请求时按经过的周期数多次减半（最多到清零）
+        long periods = Math.min(32, 1 + (now - due) / DECAY_INTERVAL_MILLIS);
+        for (long i = 0; i < periods; i++) {
+            byIp.decay();
+            byPrefix.decay();
+            byBlock.decay();
+        }
+    }
+
+    private static long ipKey(IpAddress ip) {
+        return CountMinSketch.key(ip.high(), ip.low());
+    }
+
+    private static long blockKey(String blockId) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < blockId.length(); i++) {
+            hash = 31 * hash + blockId.charAt(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,74 @@
+package run.halo.encrypt.verify;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.crypto.KdfParameters;
+import run.halo.encrypt.crypto.PasswordHasher;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.processor.EncryptBlockRegistry;
+
+/**
+ * 区块固定密码验证（密码哈希校验，成本最高，最后尝试）
+ * 仅当区块设置了密码且输入非空时才计算，验证成功后写入 {@link VerifiedCredentialMemo}；
+ * 哈希的算法或成本参数与当前设置不一致时，趁持有明文密码按新参数重新哈希
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Order(40)
+public class BlockPasswordVerifier implements UnlockVerifier {
+
+    private final EncryptMetrics metrics;
+    private final VerifiedCredentialMemo memo;
+    private final PasswordHasher passwordHasher;
+    private final EncryptBlockRegistry blockRegistry;
+
+    @Override
+    public String method() {
+        return EncryptMetrics.METHOD_BLOCK_PASSWORD;
+    }
+
+    @Override
+    public boolean precheck(UnlockAttempt attempt) {
+        return hasPassword(attempt);
+    }
+
+    @Override
+    public boolean blocking() {
+        return true;
+    }
+
+    @Override
+    public String verify(UnlockAttempt attempt) {
+        String passwordHash = attempt.block().passwordHash();
+        boolean matched = metrics.timeKdf(PasswordHasher.algorithmOf(passwordHash), "match",
+                () -> passwordHasher.matches(attempt.password(), passwordHash));
+        if (!matched) {
+            return null;
+        }
+        String blockId = attempt.block().blockId();
+        String currentHash = passwordHash;
+        if (passwordHasher.needsRehash(passwordHash)) {
+            KdfParameters parameters = passwordHasher.effective();
+            currentHash = metrics.timeKdf(parameters.algorithm(), "encode",
+                    () -> passwordHasher.encode(attempt.password(), parameters));
+            blockRegistry.updatePasswordHash(blockId, passwordHash, currentHash);
+            log.info("区块密码已按新参数重新哈希 - blockId: {}", blockId);
+        }
+        // 只记录验证成功的凭据
+        memo.remember(blockId, attempt.password(), currentHash);
+        return "区块密码";
+    }
+
+    /**
+     * 区块设置了密码且输入非空
+     */
+    static boolean hasPassword(UnlockAttempt attempt) {
+        String passwordHash = attempt.block().passwordHash();
+        return !attempt.password().isEmpty() && passwordHash != null && !passwordHash.isEmpty();
+    }
+}
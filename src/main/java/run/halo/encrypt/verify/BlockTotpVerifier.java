@@ -0,0 +1,89 @@
+package run.halo.encrypt.verify;
+
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.processor.BlockTotpRegistry;
+import run.halo.encrypt.processor.BlockTotpRegistry.BlockTotpEntry;
+import run.halo.encrypt.util.TotpUtils;
+
+/**
+ * 区块动态密码验证（一次 HMAC，密钥取自 {@link TotpKeyCache}）
+ * 仅当输入为 6 位数字且区块绑定了已启用的 TOTP 配置（见 {@link BlockTotpRegistry}）时才计算；
+ * 注册表尚未加载该区块时直接读取 BlockTotp，读取在校验线程池上进行
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Order(30)
+public class BlockTotpVerifier implements UnlockVerifier {
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final TotpKeyCache keyCache;
+    private final BlockTotpRegistry blockTotpRegistry;
+
+    @Override
+    public String method() {
+        return EncryptMetrics.METHOD_BLOCK_TOTP;
+    }
+
+    @Override
+    public boolean precheck(UnlockAttempt attempt) {
+        if (!attempt.codeFormat() || totpId(attempt) == null) {
+            return false;
+        }
+        BlockTotpEntry config = blockTotpRegistry.get(totpId(attempt));
+        // 注册表未命中时不能断定配置不存在（可能尚未加载），由 verify 直接读取
+        return config == null || config.enabled();
+    }
+
+    @Override
+    public boolean blocking(UnlockAttempt attempt) {
+        return blockTotpRegistry.get(totpId(attempt)) == null;
+    }
+
+    @Override
+    public String verify(UnlockAttempt attempt) {
+        BlockTotpEntry config = config(attempt);
+        if (config == null) {
+            return null;
+        }
+        try {
+            if (TotpUtils.verifyCodeByCreationTime(keyCache.get(config.secret()), attempt.code(),
+                    config.createdAt(), config.durationDays())) {
+                return "区块动态密码";
+            }
+        } catch (Exception e) {
+            log.warn("区块 TOTP 验证异常 - totpId: {}, error: {}", attempt.block().totpId(), e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 已启用的区块 TOTP 配置，注册表未命中时直接读取（此时在校验线程池上执行，见 {@link #blocking(UnlockAttempt)}）
+     */
+    private BlockTotpEntry config(UnlockAttempt attempt) {
+        String totpId = totpId(attempt);
+        BlockTotpEntry config = blockTotpRegistry.get(totpId);
+        if (config == null) {
+            try {
+                config = blockTotpRegistry.fetch(totpId).block(FETCH_TIMEOUT);
+            } catch (Exception e) {
+                log.warn("读取区块 TOTP 配置失败 - totpId: {}, error: {}", totpId, e.getMessage());
+                return null;
+            }
+        }
+        return config != null && config.enabled() ? config : null;
+    }
+
+    private static String totpId(UnlockAttempt attempt) {
+        String totpId = attempt.block().totpId();
+        return totpId == null || totpId.isEmpty() ? null : totpId;
+    }
+}
@@ -0,0 +1,134 @@
+package run.halo.encrypt.verify;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.model.TotpPassword;
+import run.halo.encrypt.processor.EncryptSettingsSnapshot;
+import run.halo.encrypt.verify.TotpCodeScheduler.CodeSchedule;
+
+/**
+ * 全局动态密码码表
+ * 所有启用的全局密码在当前周期（及可选的相邻周期）的 6 位码，按数值排序保存，
+ * 验证时只需一次二分查找，不再逐个密码做 HMAC
+ *
+ * 各周期的码取自 {@link TotpCodeScheduler} 预先计算的结果（与管理端展示共用同一份），码表本身不计算 HMAC；
+ * 码表在任一密码的周期切换、密码列表变化或容错设置变化时重建，
+ * 密码列表变化时同时取消已删除密码的周期调度
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GlobalTotpCodeTable {
+
+    private final TotpCodeScheduler codeScheduler;
+
+    private volatile Table table = Table.EMPTY;
+
+    /**
+     * 查找与输入码匹配的全局密码
+     *
+     * @param code 6 位数字码的数值
+     * @return 匹配的密码，不匹配时返回 null
+     */
+    public TotpPassword lookup(int code, EncryptSettingsSnapshot settings) {
+        Table current = current(settings);
+        int index = Arrays.binarySearch(current.codes, code);
+        return index >= 0 ? current.passwords[index] : null;
+    }
+
+    /**
+     * 配置快照更新后立即重建码表（由配置变更事件调用），已删除的密码不再参与周期切换
+     */
+    public void refresh(EncryptSettingsSnapshot settings) {
+        current(settings);
+    }
+
+    private Table current(EncryptSettingsSnapshot settings) {
+        Table current = table;
+        if (current.passwords == null
+                || current.source != settings.totpPasswords()
+                || current.skewWindows != settings.totpSkewWindows()
+                || !codeScheduler.now().isBefore(current.validUntil)) {
+            if (current.source != settings.totpPasswords()) {
+                codeScheduler.retain(TotpCodeScheduler.GLOBAL_PREFIX, settings.totpPasswords().stream()
+                        .map(TotpPassword::getId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()));
+            }
+            current = Table.build(settings.totpPasswords(), settings.totpSkewWindows(), codeScheduler);
+            table = current;
+            log.debug("全局动态密码码表已重建 - 条目: {}, 有效至: {}", current.codes.length, current.validUntil);
+        }
+        return current;
+    }
+
+    /**
+     * 码表（codes 升序，passwords 与之一一对应）
+     *
+     * @param source     构建时的密码列表（快照中的不可变列表，以引用判断是否变化）
+     * @param validUntil 最早的周期切换时刻
+     */
+    private record Table(List<TotpPassword> source, int skewWindows, int[] codes, TotpPassword[] passwords,
+            Instant validUntil) {
+
+        static final Table EMPTY = new Table(null, 0, new int[0], null, Instant.MIN);
+
+        // 防止创建时间异常时码表长期不刷新
+        private static final Duration MAX_VALIDITY = Duration.ofDays(1);
+
+        static Table build(List<TotpPassword> source, int skewWindows, TotpCodeScheduler codeScheduler) {
+            int capacity = source.size() * (2 * skewWindows + 1);
+            long[] entries = new long[capacity];
+            TotpPassword[] byIndex = source.toArray(new TotpPassword[0]);
+            int size = 0;
+            Instant validUntil = codeScheduler.now().plus(MAX_VALIDITY);
+
+            for (int i = 0; i < byIndex.length; i++) {
+                TotpPassword totp = byIndex[i];
+                if (!totp.isEnabled() || totp.getDurationDays() <= 0) {
+                    continue;
+                }
+                CodeSchedule schedule = codeScheduler.schedule(TotpCodeScheduler.GLOBAL_PREFIX + totp.getId(),
+                        totp.getSecret(), totp.getCreatedAt(), totp.getDurationDays());
+                int[] window = skewWindows > 0
+                        ? new int[] {schedule.previousCode(), schedule.currentCode(), schedule.nextCode()}
+                        : new int[] {schedule.currentCode()};
+                for (int code : window) {
+                    if (code >= 0) {
+                        // 高 32 位为码，低 32 位为密码下标，排序后同码按列表顺序排列
+                        entries[size++] = ((long) code << 32) | i;
+                    }
+                }
+                if (schedule.rolloverAt().isBefore(validUntil)) {
+                    validUntil = schedule.rolloverAt();
+                }
+            }
+
+            Arrays.sort(entries, 0, size);
+            int[] codes = new int[size];
+            TotpPassword[] passwords = new TotpPassword[size];
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                int code = (int) (entries[i] >>> 32);
+                if (unique > 0 && codes[unique - 1] == code) {
+                    // 不同密码碰撞到同一码时保留列表中靠前的密码
+                    continue;
+                }
+                codes[unique] = code;
+                passwords[unique] = byIndex[(int) entries[i]];
+                unique++;
+            }
+            return new Table(source, skewWindows, Arrays.copyOf(codes, unique),
+                    Arrays.copyOf(passwords, unique), validUntil);
+        }
+    }
+}
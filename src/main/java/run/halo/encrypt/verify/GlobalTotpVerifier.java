@@ -0,0 +1,46 @@
+package run.halo.encrypt.verify;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.metrics.EncryptMetrics;
+import run.halo.encrypt.model.TotpPassword;
+
+/**
+ * 全局动态密码验证（查预计算的码表，一次二分查找）
+ * 仅当输入为 6 位数字且存在启用的全局密码时才查表
+ *
+ * @author Developer
+ */
+@Component
+@RequiredArgsConstructor
+@Order(20)
+public class GlobalTotpVerifier implements UnlockVerifier {
+
+    private final GlobalTotpCodeTable codeTable;
+
+    @Override
+    public String method() {
+        return EncryptMetrics.METHOD_GLOBAL_TOTP;
+    }
+
+    @Override
+    public boolean precheck(UnlockAttempt attempt) {
+        if (!attempt.codeFormat()) {
+            return false;
+        }
+        for (TotpPassword totp : attempt.settings().totpPasswords()) {
+            if (totp.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String verify(UnlockAttempt attempt) {
+        // 输入已通过 6 位数字预检查
+        TotpPassword matched = codeTable.lookup(attempt.code(), attempt.settings());
+        return matched != null ? "全局动态密码 (" + matched.getName() + ")" : null;
+    }
+}
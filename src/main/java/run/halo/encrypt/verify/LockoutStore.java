@@ -0,0 +1,207 @@
+package run.halo.encrypt.verify;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.util.IpAddress;
+
+/**
+ * 密码错误锁定记录
+ * 以（IP，区块）为键记录连续失败次数和锁定截止时间：
+ * IP 压缩为 128 位，区块 ID 映射为整数下标，每条记录只占几个原始字段；
+ * 记录的更新在 ConcurrentHashMap.compute 中原子完成
+ *
+ * 过期清理使用哈希时间轮（每格 1 秒）：每条记录按过期时间挂到对应的格子上，
+ * 时间推进时只检查到期格子中的记录；记录总数超过上限时按过期时间从早到晚淘汰
+ * （即最久未失败的记录先淘汰，仍在锁定中的记录最后淘汰）
+ *
+ * 距上次失败超过锁定时长的记录视为过期，计数重新开始
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class LockoutStore {
+
+    // 记录数上限
+    static final int MAX_ENTRIES = 100_000;
+
+    // 超过上限时淘汰到此比例，避免每次写入都触发淘汰
+    private static final double EVICT_TO_RATIO = 0.9;
+
+    // 时间轮：4096 格 × 1 秒，覆盖最长 60 分钟的锁定时间
+    private static final int WHEEL_SLOTS = 4096;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final long TICK_MILLIS = 1000;
+
+    private final Map<LockKey, Entry> entries = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private final Set<LockKey>[] wheel = new Set[WHEEL_SLOTS];
+
+    // 区块 ID -> 下标（只为确实存在的区块分配）
+    private final Map<String, Integer> blockIndexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextBlockIndex = new AtomicInteger();
+
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private long currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+    public LockoutStore() {
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * 剩余锁定时间（毫秒），未锁定时返回 0
+     */
+    public long remainingLockMillis(String clientIp, String blockId) {
+        Integer block = blockIndexes.get(blockId);
+        if (block == null) {
+            return 0;
+        }
+        Entry entry = entries.get(new LockKey(IpAddress.parse(clientIp), block));
+        if (entry == null) {
+            return 0;
+        }
+        return Math.max(0, entry.lockUntil() - System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param maxAttempts    锁定前允许的失败次数
+     * @param lockDurationMs 锁定时长，同时也是失败计数的有效期
+     */
+    public Failure recordFailure(String clientIp, String blockId, int maxAttempts, long lockDurationMs) {
+        LockKey key = new LockKey(IpAddress.parse(clientIp), internBlock(blockId));
+        long now = System.currentTimeMillis();
+
+        Entry updated = entries.compute(key, (k, entry) -> {
+            int failCount = entry == null || entry.isExpired(now) ? 1 : entry.failCount() + 1;
+            long lockUntil = failCount >= maxAttempts ? now + lockDurationMs : 0;
+            long expiresAt = lockUntil > 0 ? lockUntil : now + lockDurationMs;
+            return new Entry(failCount, lockUntil, expiresAt);
+        });
+        wheel[slotOf(updated.expiresAt())].add(key);
+
+        advance(now);
+        if (entries.size() > MAX_ENTRIES) {
+            evictOldest();
+        }
+        return new Failure(updated.failCount(), updated.lockUntil() > 0);
+    }
+
+    /**
+     * 解锁成功，清除失败记录
+     */
+    public void clear(String clientIp, String blockId) {
+        Integer block = blockIndexes.get(blockId);
+        if (block != null) {
+            entries.remove(new LockKey(IpAddress.parse(clientIp), block));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private int internBlock(String blockId) {
+        return blockIndexes.computeIfAbsent(blockId, id -> nextBlockIndex.getAndIncrement());
+    }
+
+    /**
+     * 推进时间轮，清理到期格子中已过期的记录（其他线程正在推进时直接返回）
+     */
+    private void advance(long now) {
+        long nowTick = now / TICK_MILLIS;
+        if (nowTick <= currentTick || !wheelLock.tryLock()) {
+            return;
+        }
+        try {
+            // 间隔超过一圈时每格只需检查一次
+            long from = Math.max(currentTick + 1, nowTick - WHEEL_MASK);
+            for (long tick = from; tick <= nowTick; tick++) {
+                expireSlot((int) (tick & WHEEL_MASK), now);
+            }
+            currentTick = nowTick;
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private void expireSlot(int slot, long now) {
+        Iterator<LockKey> it = wheel[slot].iterator();
+        while (it.hasNext()) {
+            LockKey key = it.next();
+            Entry remaining = entries.computeIfPresent(key, (k, entry) -> entry.isExpired(now) ? null : entry);
+            // 记录已删除，或已被重新挂到其他格子上，从本格移除；未到期的下一圈记录保留
+            if (remaining == null || slotOf(remaining.expiresAt()) != slot) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 从最早到期的格子开始淘汰，直到记录数降到上限以下
+     */
+    private void evictOldest() {
+        wheelLock.lock();
+        try {
+            int target = (int) (MAX_ENTRIES * EVICT_TO_RATIO);
+            int evicted = 0;
+            for (int i = 1; i <= WHEEL_SLOTS && entries.size() > target; i++) {
+                Iterator<LockKey> it = wheel[(int) ((currentTick + i) & WHEEL_MASK)].iterator();
+                while (it.hasNext() && entries.size() > target) {
+                    if (entries.remove(it.next()) != null) {
+                        evicted++;
+                    }
+                    it.remove();
+                }
+            }
+            log.warn("密码错误锁定记录超过上限 {}，已淘汰 {} 条最早到期的记录", MAX_ENTRIES, evicted);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private static int slotOf(long expiresAtMillis) {
+        return (int) ((expiresAtMillis / TICK_MILLIS) & WHEEL_MASK);
+    }
+
+    /**
+     * 一次失败的结果
+     *
+     * @param failCount 有效期内的连续失败次数
+     * @param locked    本次失败后是否处于锁定状态
+     */
+    public record Failure(int failCount, boolean locked) {
+
+        public int remainingAttempts(int maxAttempts) {
+            return Math.max(0, maxAttempts - failCount);
+        }
+    }
+
+    private record LockKey(long ipHigh, long ipLow, int block) {
+
+        LockKey(IpAddress ip, int block) {
+            this(ip.high(), ip.low(), block);
+        }
+    }
+
+    /**
+     * @param lockUntil 锁定截止时间（毫秒），未锁定为 0
+     * @param expiresAt 记录过期时间（毫秒）：锁定中为锁定截止时间，否则为上次失败时间 + 锁定时长
+     */
+    private record Entry(int failCount, long lockUntil, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package run.halo.encrypt.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.metrics.EncryptMetrics;
+
+/**
+ * 万能密钥验证（一次定长比较，成本最低）
+ *
+ * @author Developer
+ */
+@Component
+@Order(10)
+public class MasterKeyVerifier implements UnlockVerifier {
+
+    @Override
+    public String method() {
+        return EncryptMetrics.METHOD_MASTER_KEY;
+    }
+
+    @Override
+    public boolean precheck(UnlockAttempt attempt) {
+        String masterKey = attempt.settings().masterKey();
+        return !masterKey.isEmpty() && masterKey.length() == attempt.password().length();
+    }
+
+    @Override
+    public String verify(UnlockAttempt attempt) {
+        // 定长比较，避免通过响应时间猜测密钥
+        boolean matched = MessageDigest.isEqual(
+                attempt.settings().masterKey().getBytes(StandardCharsets.UTF_8),
+                attempt.password().getBytes(StandardCharsets.UTF_8));
+        return matched ? "万能密钥" : null;
+    }
+}
@@ -0,0 +1,37 @@
+package run.halo.encrypt.verify;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.metrics.EncryptMetrics;
+
+/**
+ * 区块固定密码的快速验证：查询最近验证成功的凭据备忘（一次 HMAC），命中时跳过 BCrypt
+ * 未命中时由 {@link BlockPasswordVerifier} 完成 BCrypt 校验并写入备忘
+ *
+ * @author Developer
+ */
+@Component
+@RequiredArgsConstructor
+@Order(35)
+public class MemoizedPasswordVerifier implements UnlockVerifier {
+
+    private final VerifiedCredentialMemo memo;
+
+    @Override
+    public String method() {
+        return EncryptMetrics.METHOD_BLOCK_PASSWORD_MEMO;
+    }
+
+    @Override
+    public boolean precheck(UnlockAttempt attempt) {
+        return BlockPasswordVerifier.hasPassword(attempt);
+    }
+
+    @Override
+    public String verify(UnlockAttempt attempt) {
+        boolean matched = memo.contains(attempt.block().blockId(), attempt.password(),
+                attempt.block().passwordHash());
+        return matched ? "区块密码" : null;
+    }
+}
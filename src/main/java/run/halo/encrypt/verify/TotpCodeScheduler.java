@@ -0,0 +1,239 @@
+package run.halo.encrypt.verify;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import run.halo.encrypt.util.TotpKey;
+import run.halo.encrypt.util.TotpUtils;
+
+/**
+ * 动态密码周期调度
+ * 为每个登记的全局密码和区块密码预先计算当前码、下一周期的码和精确的切换时刻，
+ * 由单个定时任务在最早的切换时刻到达时原子替换（下一周期的码直接成为当前码，只需再计算一个新的下一周期码），
+ * 管理端轮询当前码和全局密码码表（{@link GlobalTotpCodeTable}）都只读取已计算好的结果，不再逐次计算周期、过期时间和 HMAC
+ *
+ * 时间取自注入的 {@link Clock}，测试时可使用可控时钟并直接调用 {@link #rollOver()} 验证切换
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class TotpCodeScheduler {
+
+    // 全局密码与区块密码的登记名前缀
+    public static final String GLOBAL_PREFIX = "global:";
+    public static final String BLOCK_PREFIX = "block:";
+
+    private final TotpKeyCache keyCache;
+    private final Clock clock;
+    private final Scheduler timer = Schedulers.newSingle("encrypt-totp-rollover", true);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // 已安排的下一次切换（受 this 锁保护）
+    private Instant nextRollover = Instant.MAX;
+    private Disposable pendingRollover;
+
+    @Autowired
+    public TotpCodeScheduler(TotpKeyCache keyCache) {
+        this(keyCache, Clock.systemDefaultZone());
+    }
+
+    public TotpCodeScheduler(TotpKeyCache keyCache, Clock clock) {
+        this.keyCache = keyCache;
+        this.clock = clock;
+    }
+
+    /**
+     * 登记（或更新）一个动态密码并返回其当前周期
+     * 参数与已登记的一致时直接返回已计算的结果
+     *
+     * @param id           登记名（{@link #GLOBAL_PREFIX} 或 {@link #BLOCK_PREFIX} 加密码/区块 ID）
+     * @param durationDays 周期天数，必须大于 0
+     */
+    public CodeSchedule schedule(String id, String secret, LocalDateTime createdAt, int durationDays) {
+        Entry entry = entries.get(id);
+        if (entry == null || !entry.matches(secret, createdAt, durationDays)) {
+            entry = new Entry(keyCache.get(secret), secret, createdAt, durationDays);
+            entry.schedule = entry.compute(localNow(), null);
+            entries.put(id, entry);
+            armTimer(entry.schedule.rolloverAt());
+        }
+        CodeSchedule current = entry.schedule;
+        if (!clock.instant().isBefore(current.rolloverAt())) {
+            // 定时任务尚未执行（恰好在切换时刻读取），就地切换
+            current = entry.advance(localNow());
+        }
+        return current;
+    }
+
+    /**
+     * 取消登记（密码或区块 TOTP 删除时调用）
+     */
+    public void remove(String id) {
+        entries.remove(id);
+    }
+
+    /**
+     * 取消登记 prefix 下不在 ids 中的全部登记项（配置变更后移除已删除的密码）
+     *
+     * @param ids 仍然存在的 ID（不含前缀）
+     */
+    public void retain(String prefix, Set<String> ids) {
+        entries.keySet().removeIf(id -> id.startsWith(prefix) && !ids.contains(id.substring(prefix.length())));
+    }
+
+    /**
+     * 调度使用的当前时间
+     */
+    public Instant now() {
+        return clock.instant();
+    }
+
+    /**
+     * 距离切换的剩余时间
+     */
+    public Duration remaining(CodeSchedule schedule) {
+        return Duration.between(clock.instant(), schedule.rolloverAt());
+    }
+
+    /**
+     * 切换所有已到切换时刻的登记项，并安排下一次切换（由定时任务调用）
+     */
+    public void rollOver() {
+        synchronized (this) {
+            nextRollover = Instant.MAX;
+            pendingRollover = null;
+        }
+        Instant now = clock.instant();
+        LocalDateTime localNow = localNow();
+        Instant earliest = Instant.MAX;
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            CodeSchedule schedule = entry.schedule;
+            try {
+                if (!now.isBefore(schedule.rolloverAt())) {
+                    schedule = entry.advance(localNow);
+                }
+            } catch (RuntimeException e) {
+                log.warn("动态密码周期切换失败，已取消登记 - id: {}, error: {}", item.getKey(), e.getMessage());
+                entries.remove(item.getKey(), entry);
+                continue;
+            }
+            if (schedule.rolloverAt().isBefore(earliest)) {
+                earliest = schedule.rolloverAt();
+            }
+        }
+        armTimer(earliest);
+    }
+
+    public void dispose() {
+        synchronized (this) {
+            if (pendingRollover != null) {
+                pendingRollover.dispose();
+                pendingRollover = null;
+            }
+            nextRollover = Instant.MAX;
+        }
+        timer.dispose();
+        entries.clear();
+    }
+
+    /**
+     * 在 at 之前没有已安排的切换时，安排一次切换
+     */
+    private synchronized void armTimer(Instant at) {
+        if (at.equals(Instant.MAX) || !at.isBefore(nextRollover)) {
+            return;
+        }
+        if (pendingRollover != null) {
+            pendingRollover.dispose();
+        }
+        nextRollover = at;
+        // 多等 1 毫秒，避免毫秒取整导致提前触发
+        long delayMillis = Math.max(0, Duration.between(clock.instant(), at).toMillis() + 1);
+        pendingRollover = timer.schedule(this::rollOver, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private LocalDateTime localNow() {
+        return LocalDateTime.ofInstant(clock.instant(), clock.getZone());
+    }
+
+    /**
+     * 一个周期的预计算结果（码为 -1 表示密钥无效或周期早于创建时间）
+     *
+     * @param counter      周期编号
+     * @param previousCode 上一周期的码（全局密码容错时使用）
+     * @param currentCode  当前周期的码
+     * @param nextCode     下一周期的码
+     * @param expiresAt    当前周期的结束时间（本地时间，用于展示）
+     * @param rolloverAt   切换时刻
+     */
+    public record CodeSchedule(long counter, int previousCode, int currentCode, int nextCode,
+            LocalDateTime expiresAt, Instant rolloverAt) {
+    }
+
+    private final class Entry {
+
+        private final TotpKey key;
+        private final String secret;
+        private final LocalDateTime createdAt;
+        private final int durationDays;
+
+        private volatile CodeSchedule schedule;
+
+        Entry(TotpKey key, String secret, LocalDateTime createdAt, int durationDays) {
+            this.key = key;
+            this.secret = secret;
+            this.createdAt = createdAt;
+            this.durationDays = durationDays;
+        }
+
+        boolean matches(String secret, LocalDateTime createdAt, int durationDays) {
+            return Objects.equals(this.secret, secret)
+                    && Objects.equals(this.createdAt, createdAt)
+                    && this.durationDays == durationDays;
+        }
+
+        /**
+         * 切换到 now 所在的周期（并发切换的结果相同，无需加锁）
+         */
+        CodeSchedule advance(LocalDateTime now) {
+            CodeSchedule updated = compute(now, schedule);
+            schedule = updated;
+            return updated;
+        }
+
+        /**
+         * 计算 now 所在周期；恰好进入上一结果的下一周期时复用已算好的码（只需计算新的下一周期码）
+         */
+        CodeSchedule compute(LocalDateTime now, CodeSchedule previous) {
+            long counter = TotpUtils.getCounterByCreationTime(createdAt, durationDays, now);
+            if (previous != null && previous.counter() == counter && now.isBefore(previous.expiresAt())) {
+                return previous;
+            }
+            boolean adjacent = previous != null && previous.counter() + 1 == counter;
+            int previousCode = adjacent ? previous.currentCode() : code(counter - 1);
+            int currentCode = adjacent ? previous.nextCode() : code(counter);
+            LocalDateTime expiresAt = TotpUtils.getExpirationTimeByCreation(createdAt, durationDays, now);
+            return new CodeSchedule(counter, previousCode, currentCode, code(counter + 1), expiresAt,
+                    expiresAt.atZone(clock.getZone()).toInstant());
+        }
+
+        private int code(long counter) {
+            return key != null && counter >= 0 ? key.generateCode(counter) : -1;
+        }
+    }
+}
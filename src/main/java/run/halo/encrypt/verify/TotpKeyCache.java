@@ -0,0 +1,45 @@
+package run.halo.encrypt.verify;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.util.TotpKey;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 已解码 TOTP 密钥的缓存（以 Base32 密钥字符串为键）
+ * 全局密码码表、区块动态密码验证和管理端的动态码查看共用，同一密钥只解码、初始化 Mac 一次
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class TotpKeyCache {
+
+    // 全局密码和区块密码的总数通常很小，按条目数限制即可
+    private static final long MAX_KEYS = 1024;
+
+    private final WeightedLruCache<String, TotpKey> keys = new WeightedLruCache<>(MAX_KEYS, key -> 1);
+
+    /**
+     * 获取密钥，密钥为空或格式不正确时返回 null
+     */
+    public TotpKey get(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            return null;
+        }
+        TotpKey key = keys.get(secret);
+        if (key == null) {
+            try {
+                key = TotpKey.of(secret);
+            } catch (IllegalArgumentException e) {
+                log.warn("TOTP 密钥无效: {}", e.getMessage());
+                return null;
+            }
+            TotpKey existing = keys.putIfAbsent(secret, key);
+            if (existing != null) {
+                key = existing;
+            }
+        }
+        return key;
+    }
+}
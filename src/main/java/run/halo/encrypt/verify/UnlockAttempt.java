@@ -0,0 +1,32 @@
+package run.halo.encrypt.verify;
+
+import run.halo.encrypt.processor.EncryptContentProcessor.EncryptedBlock;
+import run.halo.encrypt.processor.EncryptSettingsSnapshot;
+import run.halo.encrypt.util.TotpUtils;
+
+/**
+ * 一次解锁尝试
+ *
+ * @param block      目标区块
+ * @param password   用户输入的密码
+ * @param settings   当前配置快照
+ * @param code       输入按 6 位数字动态码解析出的数值（不是动态码格式时为 -1），只解析一次供各验证方式共用
+ * @author Developer
+ */
+public record UnlockAttempt(
+        EncryptedBlock block,
+        String password,
+        EncryptSettingsSnapshot settings,
+        int code) {
+
+    public static UnlockAttempt of(EncryptedBlock block, String password, EncryptSettingsSnapshot settings) {
+        return new UnlockAttempt(block, password, settings, TotpUtils.parseCode(password));
+    }
+
+    /**
+     * 输入是否为动态密码格式（6 位数字）
+     */
+    public boolean codeFormat() {
+        return code >= 0;
+    }
+}
@@ -0,0 +1,42 @@
+package run.halo.encrypt.verify;
+
+/**
+ * 解锁验证策略
+ * 各实现按验证成本从低到高排序（@Order），依次尝试直到某一方式通过；
+ * 每个实现先做不涉及哈希运算的预检查（长度、字符类型、配置是否存在），预检查不通过时直接跳过
+ *
+ * @author Developer
+ */
+public interface UnlockVerifier {
+
+    /**
+     * 验证方式（用于指标标签）
+     */
+    String method();
+
+    /**
+     * 廉价的预检查，返回 false 时跳过本验证方式
+     */
+    boolean precheck(UnlockAttempt attempt);
+
+    /**
+     * 验证是否耗时较长（如 BCrypt），是则在校验线程池上执行，不占用事件循环
+     */
+    default boolean blocking() {
+        return false;
+    }
+
+    /**
+     * 本次尝试的验证是否耗时较长（如需要读取存储），默认与 {@link #blocking()} 相同
+     */
+    default boolean blocking(UnlockAttempt attempt) {
+        return blocking();
+    }
+
+    /**
+     * 验证密码
+     *
+     * @return 验证通过时返回解锁方式的描述（用于日志），否则返回 null
+     */
+    String verify(UnlockAttempt attempt);
+}
@@ -0,0 +1,59 @@
+package run.halo.encrypt.verify;
+
+import org.springframework.stereotype.Component;
+import run.halo.encrypt.util.KeyedDigest;
+import run.halo.encrypt.util.KeyedDigest.Digest;
+import run.halo.encrypt.util.WeightedLruCache;
+
+/**
+ * 已验证凭据备忘
+ * 记录短时间内验证成功的（blockId，密码，密码哈希）组合，同一密码再次输入时无需重新 BCrypt 校验
+ *
+ * 键是进程内随机密钥下的 HMAC-SHA256 摘要，内存中不保存任何可还原密码的信息；
+ * 密码哈希参与摘要计算，区块密码变更后旧记录自然无法命中，随后按 LRU 或过期时间淘汰。
+ * 只有验证成功才会写入
+ *
+ * @author Developer
+ */
+@Component
+public class VerifiedCredentialMemo {
+
+    static final int MAX_ENTRIES = 10_000;
+    static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    private final KeyedDigest keyedDigest = new KeyedDigest();
+
+    // 摘要 -> 过期时间
+    private final WeightedLruCache<Digest, Long> entries = new WeightedLruCache<>(MAX_ENTRIES, expiresAt -> 1);
+
+    /**
+     * 是否在有效期内验证成功过
+     */
+    public boolean contains(String blockId, String password, String passwordHash) {
+        Digest digest = digest(blockId, password, passwordHash);
+        Long expiresAt = entries.get(digest);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            entries.remove(digest);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 记录一次验证成功
+     */
+    public void remember(String blockId, String password, String passwordHash) {
+        entries.put(digest(blockId, password, passwordHash), System.currentTimeMillis() + TTL_MILLIS);
+    }
+
+    public WeightedLruCache.Stats stats() {
+        return entries.stats();
+    }
+
+    private Digest digest(String blockId, String password, String passwordHash) {
+        return keyedDigest.digest(blockId, passwordHash, password);
+    }
+}
@@ -0,0 +1,101 @@
+package run.halo.encrypt.verify;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 密码校验专用线程池
+ * BCrypt 校验约耗时数十毫秒，放在 Netty 事件循环上会阻塞其他请求，这里交给独立的有界线程池执行：
+ * 线程数按 CPU 核数的一半计算，等待队列有界，队列满时立即拒绝（由接口返回 429），而不是拖慢整个站点
+ *
+ * @author Developer
+ */
+@Slf4j
+@Component
+public class VerifyScheduler {
+
+    // 每个线程允许排队的任务数
+    private static final int QUEUE_PER_THREAD = 16;
+
+    // 单次 BCrypt 校验的估算耗时（毫秒），用于计算 Retry-After
+    private static final long ESTIMATED_TASK_MILLIS = 100;
+
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+
+    public VerifyScheduler() {
+        this.threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), new VerifyThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor, "encrypt-verify");
+    }
+
+    /**
+     * 在校验线程池上执行任务，队列已满时以 {@link VerifyRejectedException} 结束
+     */
+    public <T> Mono<T> submit(Callable<T> task) {
+        return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, e -> {
+                    log.warn("密码校验队列已满 - 线程数: {}, 排队: {}", threads, executor.getQueue().size());
+                    return new VerifyRejectedException(retryAfterSeconds());
+                });
+    }
+
+    /**
+     * 关闭线程池（插件停止时调用）
+     */
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    /**
+     * 按当前排队数估算队列清空所需的秒数（至少 1 秒）
+     */
+    private long retryAfterSeconds() {
+        long queuedMillis = (executor.getQueue().size() + (long) threads) * ESTIMATED_TASK_MILLIS / threads;
+        return Math.max(1, (queuedMillis + 999) / 1000);
+    }
+
+    /**
+     * 校验队列已满
+     */
+    public static class VerifyRejectedException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        public VerifyRejectedException(long retryAfterSeconds) {
+            super("验证请求过多，请稍后重试");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private static class VerifyThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "encrypt-verify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
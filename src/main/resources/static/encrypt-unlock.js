@@ -43,8 +43,9 @@
             }
         } catch (e) { }
 
-        // 检查 Cookie
-        return document.cookie.includes('encrypt_unlocked_' + blockId + '=');
+        // 检查解锁令牌 Cookie（仅作提示，服务端会校验签名）；令牌解码由头部内联脚本提供
+        const token = window.EncryptUnlockToken;
+        return !!token && token.has(blockId);
     }
 
     /**
@@ -131,20 +132,33 @@
         hideError(errorMsg);
 
         try {
-            // 获取客户端 IP（用于锁定）
-            const response = await fetch(`${API_BASE}/unlock`, {
+            // 同一页面中其他未解锁的密码区块一并提交，共用同一密码的区块只需校验一次；
+            // 目标区块放在首位，服务端只对它记录失败次数
+            const siblings = findLockedSiblings(block);
+            const response = await fetch(`${API_BASE}/unlock-batch`, {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
                 },
                 credentials: 'include',
                 body: JSON.stringify({
-                    blockId: blockId,
+                    blockIds: [blockId, ...siblings.map(el => el.dataset.blockId)],
                     password: password
                 })
             });
 
-            const data = await response.json();
+            const batch = await response.json();
+            const results = batch.results || [];
+            const data = results.find(item => item.blockId === blockId) || batch;
+
+            // 其他区块只处理解锁成功的结果，失败时保持原状
+            results.forEach(item => {
+                const sibling = siblings.find(el => el.dataset.blockId === item.blockId);
+                if (sibling && item.success) {
+                    markAsUnlocked(item.blockId);
+                    revealContent(sibling, item.content, true);
+                }
+            });
 
             if (data.success) {
                 // 解锁成功
@@ -182,6 +196,17 @@
         }
     }
 
+    /**
+     * 查找同一页面中其他未解锁的密码区块
+     */
+    function findLockedSiblings(block) {
+        return Array.from(document.querySelectorAll('.encrypt-block')).filter(el =>
+            el !== block
+            && el.dataset.blockId
+            && (el.dataset.type || 'password') === 'password'
+            && !el.classList.contains('unlock-success'));
+    }
+
     /**
      * 输入框抖动效果
      */